@@ -0,0 +1,123 @@
+package javafx.embed.swing.modified;
+
+import java.util.Random;
+import com.sun.javafx.application.PlatformImpl;
+import javafx.application.Platform;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Compares the {@link AlphaKernels} loops with the {@code PixelReader} and
+ * {@code PixelWriter} conversions {@link SwingFXUtils} used before.
+ * <p>
+ * For unpremultiplying, the old path reads a {@code WritableImage} as
+ * {@code INT_ARGB}, which makes the reader divide every component; the new
+ * path reads it as {@code INT_ARGB_PRE} and runs
+ * {@link AlphaKernels#unpremultiply}. For premultiplying, the old path
+ * writes {@code INT_ARGB} pixels; the new path copies them to a scratch
+ * array, runs {@link AlphaKernels#premultiply} and writes them as
+ * {@code INT_ARGB_PRE}, like the region {@code toFXImage} path does.
+ * <p>
+ * Each case is run on images with three mixes of alpha values, and the
+ * best time of several rounds is reported in nanoseconds per pixel. The
+ * number of pixels for which both unpremultiply paths return different
+ * values is printed as well, as the two may round differently.
+ * Run with the JavaFX runtime on the class path:
+ * <pre>
+ *     java javafx.embed.swing.modified.AlphaKernelsBenchmark [size] [rounds]
+ * </pre>
+ */
+public final class AlphaKernelsBenchmark {
+    private AlphaKernelsBenchmark() {} // no instances
+
+    private static final int WARMUP_ROUNDS = 20;
+
+    public static void main(String args[]) {
+        int size = (args.length > 0) ? Integer.parseInt(args[0]) : 1024;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 50;
+        PlatformImpl.startup(() -> {
+            // No need to do anything here
+        });
+        try {
+            System.out.printf("%dx%d pixels, best of %d rounds, ns/pixel%n", size, size, rounds);
+            System.out.printf("%-12s %10s %10s %10s %10s %10s%n", "alpha", "unpre old",
+                              "unpre new", "pre old", "pre new", "mismatch");
+            run("0% blended", size, rounds, 0.0);
+            run("10% blended", size, rounds, 0.1);
+            run("100% blended", size, rounds, 1.0);
+        } finally {
+            Platform.exit();
+        }
+    }
+
+    // blendedShare is the share of pixels that are neither opaque nor
+    // fully transparent; the rest is split evenly between the two
+    private static void run(String name, int size, int rounds, double blendedShare) {
+        int pixelCount = size * size;
+        int argb[] = createPixels(pixelCount, blendedShare);
+        int oldOut[] = new int[pixelCount];
+        int newOut[] = new int[pixelCount];
+        int scratch[] = new int[pixelCount];
+
+        WritableImage src = new WritableImage(size, size);
+        src.getPixelWriter().setPixels(0, 0, size, size, PixelFormat.getIntArgbInstance(),
+                                       argb, 0, size);
+        PixelReader pr = src.getPixelReader();
+        PixelWriter dst = new WritableImage(size, size).getPixelWriter();
+
+        long unpreOld = Long.MAX_VALUE;
+        long unpreNew = Long.MAX_VALUE;
+        long preOld = Long.MAX_VALUE;
+        long preNew = Long.MAX_VALUE;
+        for (int round = -WARMUP_ROUNDS; round < rounds; round++) {
+            long t0 = System.nanoTime();
+            pr.getPixels(0, 0, size, size, PixelFormat.getIntArgbInstance(), oldOut, 0, size);
+            long t1 = System.nanoTime();
+            pr.getPixels(0, 0, size, size, PixelFormat.getIntArgbPreInstance(), newOut, 0, size);
+            AlphaKernels.unpremultiply(newOut, 0, size, size, size);
+            long t2 = System.nanoTime();
+            dst.setPixels(0, 0, size, size, PixelFormat.getIntArgbInstance(), argb, 0, size);
+            long t3 = System.nanoTime();
+            System.arraycopy(argb, 0, scratch, 0, pixelCount);
+            AlphaKernels.premultiply(scratch, 0, size, size, size);
+            dst.setPixels(0, 0, size, size, PixelFormat.getIntArgbPreInstance(), scratch, 0, size);
+            long t4 = System.nanoTime();
+            if (round >= 0) {
+                unpreOld = Math.min(unpreOld, t1 - t0);
+                unpreNew = Math.min(unpreNew, t2 - t1);
+                preOld = Math.min(preOld, t3 - t2);
+                preNew = Math.min(preNew, t4 - t3);
+            }
+        }
+
+        int mismatches = 0;
+        for (int i = 0; i < pixelCount; i++) {
+            if (oldOut[i] != newOut[i]) {
+                mismatches++;
+            }
+        }
+        System.out.printf("%-12s %10.3f %10.3f %10.3f %10.3f %10d%n", name,
+                          (double) unpreOld / pixelCount, (double) unpreNew / pixelCount,
+                          (double) preOld / pixelCount, (double) preNew / pixelCount,
+                          mismatches);
+    }
+
+    private static int[] createPixels(int count, double blendedShare) {
+        // Fixed seed, so runs are comparable
+        Random random = new Random(42);
+        int pixels[] = new int[count];
+        for (int i = 0; i < count; i++) {
+            int rgb = random.nextInt() & 0xffffff;
+            int a;
+            if (random.nextDouble() < blendedShare) {
+                a = 1 + random.nextInt(254);
+            } else {
+                a = random.nextBoolean() ? 0xff : 0;
+            }
+            pixels[i] = (a << 24) | rgb;
+        }
+        return pixels;
+    }
+}
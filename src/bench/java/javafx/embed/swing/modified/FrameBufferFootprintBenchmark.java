@@ -0,0 +1,115 @@
+package javafx.embed.swing.modified;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.IntBuffer;
+
+/**
+ * Compares the footprint of heap and off-heap {@link FrameBuffer}s, as used
+ * by {@link SynchronizedJFXPanel} with and without
+ * {@link SynchronizedJFXPanel#setOffHeapPixelBuffer(boolean)}.
+ * <p>
+ * For each mode, a back buffer and a staging buffer of the given physical
+ * size are allocated like the panel does, and the growth of the Java heap
+ * and of direct memory is reported, together with the best time to draw
+ * the frame into a heap image of the same size. A live resize is then
+ * simulated by growing the buffers in many small steps, and the direct
+ * memory still allocated afterwards is reported with and without recycling
+ * the replaced buffers. Run with:
+ * <pre>
+ *     java javafx.embed.swing.modified.FrameBufferFootprintBenchmark [width height [steps]]
+ * </pre>
+ * The default size is that of a 4K display; pass 7680 4320 for a 4K
+ * display at a scale factor of 2, with a heap large enough for the heap
+ * mode.
+ */
+public final class FrameBufferFootprintBenchmark {
+    private FrameBufferFootprintBenchmark() {} // no instances
+
+    private static final int DRAW_ROUNDS = 20;
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String args[]) {
+        int width = (args.length > 1) ? Integer.parseInt(args[0]) : 3840;
+        int height = (args.length > 1) ? Integer.parseInt(args[1]) : 2160;
+        int steps = (args.length > 2) ? Integer.parseInt(args[2]) : 100;
+        System.out.printf("%dx%d pixels, back and staging buffer%n", width, height);
+        System.out.printf("%-9s %10s %10s %10s%n", "mode", "heap MB", "direct MB", "draw ms");
+        measure("heap", width, height, false);
+        measure("off-heap", width, height, true);
+
+        System.out.printf("%nOff-heap resize from %dx%d in %d steps, direct MB left%n",
+                          width / 2, height / 2, steps);
+        // Recycled first, as the buffers replaced by the other run are only
+        // freed at some point after the next garbage collection
+        System.out.printf("%-12s %10.1f%n", "recycled", resize(width, height, steps, true));
+        System.out.printf("%-12s %10.1f%n", "replaced", resize(width, height, steps, false));
+    }
+
+    private static void measure(String name, int width, int height, boolean offHeap) {
+        long heap0 = usedHeap();
+        long direct0 = usedDirect();
+        FrameBuffer back = new FrameBuffer(width, height, offHeap);
+        FrameBuffer staging = new FrameBuffer(width, height, offHeap);
+        long heap = usedHeap() - heap0;
+        long direct = usedDirect() - direct0;
+
+        IntBuffer pixels = back.getTransferBuffer();
+        for (int i = 0; i < width * height; i++) {
+            pixels.put(i, 0xff000000 | i);
+        }
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < DRAW_ROUNDS; round++) {
+            Graphics2D g = target.createGraphics();
+            long start = System.nanoTime();
+            back.draw(g, 0, 0, width, height);
+            best = Math.min(best, System.nanoTime() - start);
+            g.dispose();
+        }
+        System.out.printf("%-9s %10.1f %10.1f %10.2f%n", name,
+                          heap / 1e6, direct / 1e6, best / 1e6);
+        back.release();
+        staging.release();
+    }
+
+    // Grows a back and staging buffer pair from half the size to the full
+    // size. Returns the direct memory in MB still allocated afterwards;
+    // buffers that were not recycled are only freed once collected.
+    private static double resize(int width, int height, int steps, boolean recycle) {
+        System.gc();
+        long direct0 = usedDirect();
+        FrameBuffer back = null;
+        FrameBuffer staging = null;
+        for (int step = 0; step <= steps; step++) {
+            int w = width / 2 + (width - width / 2) * step / steps;
+            int h = height / 2 + (height - height / 2) * step / steps;
+            FrameBuffer old = back;
+            back = new FrameBuffer(w, h, true, recycle ? staging : null);
+            // The panel fetches the next frame into a new staging buffer
+            staging = new FrameBuffer(w, h, true, recycle ? old : null);
+        }
+        double left = (usedDirect() - direct0) / 1e6;
+        back.release();
+        staging.release();
+        return left;
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+}
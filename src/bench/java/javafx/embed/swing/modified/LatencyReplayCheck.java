@@ -0,0 +1,178 @@
+package javafx.embed.swing.modified;
+
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+import com.sun.javafx.application.PlatformImpl;
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import javafx.scene.shape.Rectangle;
+
+/**
+ * Replays a recorded session against a {@link SynchronizedJFXPanel} that
+ * is never shown and checks the latencies its {@link LatencyProbe}
+ * measures, as an automated test would.
+ * <p>
+ * A log of mouse moves and key presses is recorded with an
+ * {@link InputEventRecorder}, at the given interval between events, and
+ * replayed at recorded speed with an {@link InputEventReplayer}. Every
+ * mouse move and key press changes the scene, so each event is followed
+ * by a rendered frame. As the panel is not showing, the frames are never
+ * painted, and events complete when their frame is fetched. The check
+ * fails, and the process exits with status 1, if
+ * <ul>
+ * <li>an event is not measured within the timeout, or events are dropped,
+ * <li>the percentiles of a stage are not ordered, or the total latency
+ *     is less than its stages.
+ * </ul>
+ * The percentiles of each event type are printed. Run with the JavaFX
+ * runtime on the class path:
+ * <pre>
+ *     java javafx.embed.swing.modified.LatencyReplayCheck [events [intervalMillis]]
+ * </pre>
+ */
+public final class LatencyReplayCheck {
+    private LatencyReplayCheck() {} // no instances
+
+    private static final int SIZE = 200;
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    public static void main(String args[]) throws Exception {
+        int events = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+        int interval = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        boolean failed = false;
+
+        PlatformImpl.startup(() -> {
+            // No need to do anything here
+        });
+        try {
+            SynchronizedJFXPanel panel[] = new SynchronizedJFXPanel[1];
+            SwingUtilities.invokeAndWait(() -> panel[0] = new SynchronizedJFXPanel());
+            Rectangle marker = new Rectangle(10, 10);
+            Scene scene = new Scene(new Group(marker), SIZE, SIZE);
+            scene.addEventHandler(javafx.scene.input.MouseEvent.MOUSE_MOVED, e -> {
+                marker.setTranslateX(e.getX());
+                marker.setTranslateY(e.getY());
+            });
+            scene.addEventHandler(javafx.scene.input.KeyEvent.KEY_PRESSED,
+                                  e -> marker.setRotate(marker.getRotate() + 15));
+            panel[0].setScene(scene);
+
+            int expected[] = new int[3];
+            byte log[] = record(panel[0], events, interval, expected);
+
+            // Attached before the replay, so that the replayer does not
+            // detach it while the last frames are still fetched
+            LatencyProbe probe = new LatencyProbe();
+            SwingUtilities.invokeAndWait(() -> panel[0].setLatencyProbe(probe));
+            InputEventReplayer replayer = new InputEventReplayer(panel[0]);
+            replayer.replay(new ByteArrayInputStream(log), 1);
+
+            int ids[] = { MouseEvent.MOUSE_MOVED, KeyEvent.KEY_PRESSED, KeyEvent.KEY_RELEASED };
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+            while (!isComplete(probe, ids, expected) && (System.nanoTime() - deadline < 0)) {
+                Thread.sleep(10);
+            }
+
+            System.out.printf("%d events replayed in %.1f ms%n", replayer.getEventCount(),
+                              replayer.getElapsedTime() / 1e6);
+            for (int i = 0; i < ids.length; i++) {
+                if (!check(probe, ids[i], expected[i])) {
+                    failed = true;
+                }
+            }
+            if (probe.getDroppedCount() != 0) {
+                System.out.println("FAILED: " + probe.getDroppedCount() + " events dropped");
+                failed = true;
+            }
+            SwingUtilities.invokeAndWait(() -> panel[0].setLatencyProbe(null));
+            panel[0].setScene(null);
+        } finally {
+            Platform.exit();
+        }
+        System.out.println(failed ? "FAILED" : "PASSED");
+        System.exit(failed ? 1 : 0);
+    }
+
+    // Records a resize to the scene size, then mouse moves with a key
+    // press and release after every tenth. The last event is a move, so
+    // that the key events before it are followed by a frame. Counts the
+    // moves, presses and releases into 'expected'.
+    private static byte[] record(SynchronizedJFXPanel panel, int events, int interval,
+                                 int expected[]) throws Exception
+    {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        try (InputEventRecorder recorder = new InputEventRecorder(log)) {
+            recorder.recordResize(SIZE, SIZE);
+            for (int i = 1; i <= events; i++) {
+                Thread.sleep(interval);
+                recorder.recordMouseEvent(new MouseEvent(
+                        panel, MouseEvent.MOUSE_MOVED, System.currentTimeMillis(), 0,
+                        i % SIZE, (i * 7) % SIZE, 0, false, MouseEvent.NOBUTTON));
+                expected[0]++;
+                if ((i % 10 == 0) && (i < events)) {
+                    Thread.sleep(interval);
+                    recorder.recordKeyEvent(new KeyEvent(
+                            panel, KeyEvent.KEY_PRESSED, System.currentTimeMillis(), 0,
+                            KeyEvent.VK_A, 'a'));
+                    recorder.recordKeyEvent(new KeyEvent(
+                            panel, KeyEvent.KEY_RELEASED, System.currentTimeMillis(), 0,
+                            KeyEvent.VK_A, 'a'));
+                    expected[1]++;
+                    expected[2]++;
+                }
+            }
+        }
+        return log.toByteArray();
+    }
+
+    private static boolean isComplete(LatencyProbe probe, int ids[], int expected[]) {
+        for (int i = 0; i < ids.length; i++) {
+            if (probe.getHistogram(ids[i]).getCount() < expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean check(LatencyProbe probe, int id, int expected) {
+        boolean passed = true;
+        LatencyHistogram total = probe.getHistogram(id);
+        System.out.printf("%-13s %s%n", name(id), total);
+        if (total.getCount() != expected) {
+            System.out.printf("FAILED: %d of %d events measured%n", total.getCount(), expected);
+            passed = false;
+        }
+        for (LatencyProbe.Stage stage : LatencyProbe.Stage.values()) {
+            LatencyHistogram h = probe.getHistogram(id, stage);
+            long p50 = h.getPercentile(50);
+            long p99 = h.getPercentile(99);
+            if ((h.getMin() > p50) || (p50 > p99) || (p99 > h.getMax())) {
+                System.out.printf("FAILED: %s percentiles out of order: %s%n", stage, h);
+                passed = false;
+            }
+            if ((stage != LatencyProbe.Stage.TOTAL) && (h.getMax() > total.getMax())) {
+                System.out.printf("FAILED: %s exceeds the total latency: %s%n", stage, h);
+                passed = false;
+            }
+        }
+        return passed;
+    }
+
+    private static String name(int id) {
+        switch (id) {
+            case MouseEvent.MOUSE_MOVED:
+                return "MOUSE_MOVED";
+            case KeyEvent.KEY_PRESSED:
+                return "KEY_PRESSED";
+            case KeyEvent.KEY_RELEASED:
+                return "KEY_RELEASED";
+            default:
+                return Integer.toString(id);
+        }
+    }
+}
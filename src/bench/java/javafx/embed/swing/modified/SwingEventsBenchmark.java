@@ -0,0 +1,147 @@
+package javafx.embed.swing.modified;
+
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.lang.management.ManagementFactory;
+import javax.swing.SwingUtilities;
+import com.sun.javafx.application.PlatformImpl;
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+
+/**
+ * Checks the lookup tables of {@link SwingEvents} and measures what the
+ * event forwarding path of {@link SynchronizedJFXPanel} allocates.
+ * <p>
+ * First, the button and key modifier tables are compared with the
+ * reference translations they are filled from, for every button and every
+ * combination of the low 16 bits of the extended modifiers. Then the bytes
+ * the event dispatch thread allocates are measured, with
+ * {@code ThreadMXBean.getThreadAllocatedBytes}, around many calls of
+ * <ul>
+ * <li>the {@code SwingEvents} translations used by the mouse and key
+ *     paths, which must not allocate at all, and
+ * <li>{@code sendMouseEventToFX} and {@code sendKeyEventToFX} of a panel
+ *     with a scene attached. These figures include whatever the JavaFX
+ *     embedded scene allocates to post the event to its own thread.
+ * </ul>
+ * The process exits with status 1 if a table differs from its reference
+ * or the translations allocate. Run with the JavaFX runtime on the class
+ * path:
+ * <pre>
+ *     java javafx.embed.swing.modified.SwingEventsBenchmark [events]
+ * </pre>
+ */
+public final class SwingEventsBenchmark {
+    private SwingEventsBenchmark() {} // no instances
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Prevents the JIT from dropping the translations
+    private static int sink;
+
+    public static void main(String args[]) throws Exception {
+        int events = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        boolean failed = !checkTables();
+
+        PlatformImpl.startup(() -> {
+            // No need to do anything here
+        });
+        try {
+            SynchronizedJFXPanel panel[] = new SynchronizedJFXPanel[1];
+            SwingUtilities.invokeAndWait(() -> panel[0] = new SynchronizedJFXPanel());
+            panel[0].setScene(new Scene(new Group(), 200, 200));
+
+            MouseEvent mouseEvents[] = new MouseEvent[256];
+            for (int i = 0; i < mouseEvents.length; i++) {
+                mouseEvents[i] = new MouseEvent(panel[0], MouseEvent.MOUSE_MOVED, 0, 0,
+                                                i % 200, i / 2, 0, false, MouseEvent.NOBUTTON);
+            }
+            KeyEvent keyEvents[] = {
+                new KeyEvent(panel[0], KeyEvent.KEY_PRESSED, 0, KeyEvent.SHIFT_DOWN_MASK,
+                             KeyEvent.VK_A, 'A'),
+                new KeyEvent(panel[0], KeyEvent.KEY_TYPED, 0, KeyEvent.SHIFT_DOWN_MASK,
+                             KeyEvent.VK_UNDEFINED, 'A'),
+                new KeyEvent(panel[0], KeyEvent.KEY_RELEASED, 0, KeyEvent.SHIFT_DOWN_MASK,
+                             KeyEvent.VK_A, 'A')
+            };
+
+            long result[] = new long[3];
+            SwingUtilities.invokeAndWait(() -> {
+                // The first rounds warm up the JIT
+                for (int round = 0; round < 3; round++) {
+                    result[0] = measure(() -> translate(mouseEvents, keyEvents, events));
+                    result[1] = measure(() -> {
+                        for (int i = 0; i < events; i++) {
+                            panel[0].sendMouseEventToFX(mouseEvents[i % mouseEvents.length]);
+                        }
+                    });
+                    result[2] = measure(() -> {
+                        for (int i = 0; i < events; i++) {
+                            panel[0].sendKeyEventToFX(keyEvents[i % keyEvents.length]);
+                        }
+                    });
+                }
+            });
+            System.out.printf("%-20s %12s%n", "path", "bytes/event");
+            System.out.printf("%-20s %12.2f%n", "SwingEvents", (double) result[0] / events);
+            System.out.printf("%-20s %12.2f%n", "sendMouseEventToFX", (double) result[1] / events);
+            System.out.printf("%-20s %12.2f%n", "sendKeyEventToFX", (double) result[2] / events);
+            if (result[0] != 0) {
+                System.out.println("FAILED: the translations allocate");
+                failed = true;
+            }
+            panel[0].setScene(null);
+        } finally {
+            Platform.exit();
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    private static boolean checkTables() {
+        int mismatches = 0;
+        for (int mods = 0; mods < 0x10000; mods++) {
+            for (int button = -1; button <= 6; button++) {
+                if (SwingEvents.mouseButtonToEmbedMouseButton(button, mods)
+                        != SwingEvents.computeEmbedMouseButton(button, mods))
+                {
+                    mismatches++;
+                }
+            }
+            if (SwingEvents.keyModifiersToEmbedKeyModifiers(mods)
+                    != SwingEvents.computeEmbedKeyModifiers(mods))
+            {
+                mismatches++;
+            }
+        }
+        System.out.println("Table mismatches: " + mismatches);
+        return mismatches == 0;
+    }
+
+    // The translations sendMouseEventToFX and sendKeyEventToFX perform
+    private static void translate(MouseEvent mouseEvents[], KeyEvent keyEvents[], int events) {
+        int sum = 0;
+        for (int i = 0; i < events; i++) {
+            MouseEvent m = mouseEvents[i % mouseEvents.length];
+            sum += SwingEvents.mouseIDToEmbedMouseType(m.getID());
+            sum += SwingEvents.mouseButtonToEmbedMouseButton(m.getButton(), m.getModifiersEx());
+            KeyEvent k = keyEvents[i % keyEvents.length];
+            sum += SwingEvents.keyIDToEmbedKeyType(k.getID());
+            sum += SwingEvents.keyModifiersToEmbedKeyModifiers(k.getModifiersEx());
+            sum += SwingEvents.keyCharToEmbedKeyChars(k.getKeyChar()).length;
+        }
+        sink += sum;
+    }
+
+    // Returns the bytes the current thread allocated while running the
+    // task, minus what measuring itself allocates
+    private static long measure(Runnable task) {
+        long id = Thread.currentThread().getId();
+        long b0 = THREADS.getThreadAllocatedBytes(id);
+        long b1 = THREADS.getThreadAllocatedBytes(id);
+        task.run();
+        long b2 = THREADS.getThreadAllocatedBytes(id);
+        return Math.max(0, (b2 - b1) - (b1 - b0));
+    }
+}
@@ -0,0 +1,109 @@
+package javafx.embed.swing.modified;
+
+import java.util.concurrent.TimeUnit;
+import javax.swing.Timer;
+
+/**
+ * Decides when a {@link SynchronizedJFXPanel} on a high-resolution display
+ * should render its scene at a reduced pixel scale factor.
+ * <p>
+ * The time spent per frame fetching the pixels of the scene and blitting
+ * them is smoothed with an exponential moving average. When the average
+ * exceeds the frame budget for {@link #OVER_BUDGET_FRAMES} frames in a row,
+ * the resolution is reduced; the scene keeps its logical size and the
+ * smaller back buffer is scaled up when painted. Once no frame has arrived
+ * for {@link #IDLE_MILLIS} milliseconds, i.e. the user stopped interacting
+ * and animations ended, the full resolution is restored.
+ * <p>
+ * Instances are accessed on the EDT only.
+ */
+final class AdaptiveResolution {
+
+    static final int OVER_BUDGET_FRAMES = 3;
+    static final int IDLE_MILLIS = 300;
+    // Weight of the newest sample in the moving average
+    private static final double SMOOTHING = 0.25;
+
+    private final Timer idleTimer;
+
+    private boolean enabled = false;
+    private long budgetNanos = TimeUnit.MILLISECONDS.toNanos(16);
+    private double averageNanos = 0;
+    private long lastPaintNanos = 0;
+    private int overBudgetFrames = 0;
+    private boolean reduced = false;
+
+    /*
+     * The restore action is run on EDT once the panel has been idle while
+     * the resolution was reduced.
+     */
+    AdaptiveResolution(Runnable restore) {
+        idleTimer = new Timer(IDLE_MILLIS, e -> {
+            if (reduced) {
+                restore.run();
+            }
+        });
+        idleTimer.setRepeats(false);
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        overBudgetFrames = 0;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void setBudgetNanos(long budgetNanos) {
+        this.budgetNanos = budgetNanos;
+    }
+
+    long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    long getAverageFrameNanos() {
+        return (long) averageNanos;
+    }
+
+    boolean isReduced() {
+        return reduced;
+    }
+
+    void setReduced(boolean reduced) {
+        this.reduced = reduced;
+        overBudgetFrames = 0;
+        averageNanos = 0;
+        if (reduced) {
+            idleTimer.restart();
+        } else {
+            idleTimer.stop();
+        }
+    }
+
+    void paintDone(long nanos) {
+        lastPaintNanos = nanos;
+    }
+
+    /*
+     * Called for every fetched frame with the time getPixels took. Returns
+     * true if the resolution should be reduced now.
+     */
+    boolean frameFetched(long fetchNanos) {
+        long frameNanos = fetchNanos + lastPaintNanos;
+        averageNanos = (averageNanos == 0)
+                ? frameNanos
+                : averageNanos + SMOOTHING * (frameNanos - averageNanos);
+        if (reduced) {
+            // Still busy, postpone restoring the resolution
+            idleTimer.restart();
+            return false;
+        }
+        if (!enabled) {
+            return false;
+        }
+        overBudgetFrames = (averageNanos > budgetNanos) ? overBudgetFrames + 1 : 0;
+        return overBudgetFrames >= OVER_BUDGET_FRAMES;
+    }
+}
@@ -0,0 +1,83 @@
+package javafx.embed.swing.modified;
+
+/**
+ * Premultiply and unpremultiply loops for {@code int} ARGB pixel data.
+ * <p>
+ * Unpremultiplying divides each color component by alpha. The loops here
+ * multiply by a fixed point reciprocal looked up per alpha value instead.
+ * Both loops leave fully opaque pixels unchanged. Fully transparent pixels
+ * are set to 0 by {@link #premultiply}, and left unchanged by
+ * {@link #unpremultiply}.
+ */
+final class AlphaKernels {
+    private AlphaKernels() {} // no instances
+
+    // Fixed point (16.16) reciprocals: UNPRE_SCALE[a] == 255 / a
+    private static final int UNPRE_SCALE[] = new int[256];
+
+    static {
+        for (int a = 1; a < 256; a++) {
+            UNPRE_SCALE[a] = ((255 << 16) + (a >> 1)) / a;
+        }
+    }
+
+    /**
+     * Converts {@code INT_ARGB} pixels to {@code INT_ARGB_PRE} in place.
+     */
+    static void premultiply(int data[], int offset, int width, int height, int scan) {
+        for (int y = 0; y < height; y++) {
+            int i = offset + y * scan;
+            int end = i + width;
+            for (; i < end; i++) {
+                int argb = data[i];
+                int a = argb >>> 24;
+                if (a == 0xff) {
+                    continue;
+                }
+                if (a == 0) {
+                    data[i] = 0;
+                    continue;
+                }
+                // (c * a + 127) / 255 computed without a division
+                int r = (argb >> 16) & 0xff;
+                int g = (argb >> 8) & 0xff;
+                int b = argb & 0xff;
+                r = r * a + 0x80;
+                g = g * a + 0x80;
+                b = b * a + 0x80;
+                r = (r + (r >> 8)) >> 8;
+                g = (g + (g >> 8)) >> 8;
+                b = (b + (b >> 8)) >> 8;
+                data[i] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    /**
+     * Converts {@code INT_ARGB_PRE} pixels to {@code INT_ARGB} in place.
+     */
+    static void unpremultiply(int data[], int offset, int width, int height, int scan) {
+        final int scale[] = UNPRE_SCALE;
+        for (int y = 0; y < height; y++) {
+            int i = offset + y * scan;
+            int end = i + width;
+            for (; i < end; i++) {
+                int argb = data[i];
+                int a = argb >>> 24;
+                if (a == 0xff || a == 0) {
+                    continue;
+                }
+                int s = scale[a];
+                int r = (((argb >> 16) & 0xff) * s + 0x8000) >>> 16;
+                int g = (((argb >> 8) & 0xff) * s + 0x8000) >>> 16;
+                int b = ((argb & 0xff) * s + 0x8000) >>> 16;
+                // Components larger than alpha are invalid premultiplied data,
+                // clamp them rather than letting them wrap around
+                r = Math.min(r, 0xff);
+                g = Math.min(g, 0xff);
+                b = Math.min(b, 0xff);
+                data[i] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+}
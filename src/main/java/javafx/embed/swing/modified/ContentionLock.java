@@ -0,0 +1,44 @@
+package javafx.embed.swing.modified;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link ReentrantLock} that counts how often, and how long, threads had
+ * to wait for it. An uncontended {@link #lock()} costs one extra
+ * {@code tryLock} and one atomic increment.
+ */
+final class ContentionLock extends ReentrantLock {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong contended = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    ContentionLock(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public void lock() {
+        if (!tryLock()) {
+            long start = System.nanoTime();
+            super.lock();
+            waitNanos.addAndGet(System.nanoTime() - start);
+            contended.incrementAndGet();
+        }
+        acquisitions.incrementAndGet();
+    }
+
+    LockStatistics getStatistics() {
+        return new LockStatistics(name, acquisitions.get(), contended.get(), waitNanos.get());
+    }
+
+    void resetStatistics() {
+        acquisitions.set(0);
+        contended.set(0);
+        waitNanos.set(0);
+    }
+}
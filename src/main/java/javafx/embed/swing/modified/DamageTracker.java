@@ -0,0 +1,163 @@
+package javafx.embed.swing.modified;
+
+import java.awt.Rectangle;
+import java.util.BitSet;
+
+/**
+ * Finds the parts of a {@link SynchronizedJFXPanel}'s back buffer that
+ * changed between two frames, as the embedded scene does not report
+ * damage itself.
+ * <p>
+ * The buffer is divided into square tiles, and the pixels of each tile
+ * are compared with the same tile of the previous frame, which the panel
+ * keeps in its staging buffer after the buffers are swapped. The
+ * comparison is exact, so a changed tile is never skipped, and it stops at
+ * the first differing pixel, so changed tiles are cheap to find.
+ * <p>
+ * When most tiles change in every frame, e.g. during full-scene
+ * animations, comparing only costs time. After {@link #SUSPEND_AFTER} such
+ * frames in a row, detection is suspended and every frame is reported as
+ * fully dirty. After {@link #PROBE_INTERVAL} suspended frames, detection
+ * resumes, and is suspended again if the frames are still busy.
+ * <p>
+ * Instances are accessed on the EDT only.
+ */
+final class DamageTracker {
+
+    static final int TILE_SIZE = 64;
+    // A frame is "busy" if more than this fraction of its tiles changed
+    static final double BUSY_FRACTION = 0.75;
+    static final int SUSPEND_AFTER = 8;
+    static final int PROBE_INTERVAL = 60;
+
+    private final BitSet changedTiles = new BitSet();
+    private final Rectangle dirtyBounds = new Rectangle();
+
+    private int width;
+    private int height;
+    private int tilesX;
+    private int tilesY;
+    // False until the previous frame passed to update() is the one
+    // painted before the new frame
+    private boolean previousValid = false;
+
+    private boolean enabled = true;
+    private int busyFrames = 0;
+    private int suspendedFrames = -1; // -1: not suspended
+
+    private long comparedTiles = 0;
+    private long unchangedTiles = 0;
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        reset();
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    boolean isSuspended() {
+        return suspendedFrames >= 0;
+    }
+
+    /*
+     * Returns the fraction of compared tiles found unchanged so far.
+     */
+    double getHitRatio() {
+        return (comparedTiles == 0) ? 0 : (double) unchangedTiles / comparedTiles;
+    }
+
+    /*
+     * Forgets the previous frame, e.g. after the back buffer was replaced.
+     */
+    void reset() {
+        previousValid = false;
+        busyFrames = 0;
+        suspendedFrames = -1;
+    }
+
+    /*
+     * Compares the new frame in buf with the previous frame in prev, which
+     * may be null if there is none. Returns false if nothing changed.
+     * Otherwise the changed tiles and their union are available from
+     * getChangedTiles() and getDirtyBounds().
+     */
+    boolean update(FrameBuffer buf, FrameBuffer prev) {
+        if (buf.getWidth() != width || buf.getHeight() != height) {
+            width = buf.getWidth();
+            height = buf.getHeight();
+            tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+            tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+            previousValid = false;
+        }
+        changedTiles.clear();
+        boolean compared = previousValid && (prev != null)
+                && (prev.getWidth() == width) && (prev.getHeight() == height);
+        // The next update compares with this frame
+        previousValid = true;
+        if (!enabled || (isSuspended() && ++suspendedFrames < PROBE_INTERVAL) || !compared) {
+            markAllChanged();
+            return true;
+        }
+
+        int tileCount = tilesX * tilesY;
+        int changed = 0;
+        int minTx = tilesX, minTy = tilesY, maxTx = -1, maxTy = -1;
+        for (int ty = 0, t = 0; ty < tilesY; ty++) {
+            int y = ty * TILE_SIZE;
+            int h = Math.min(TILE_SIZE, height - y);
+            for (int tx = 0; tx < tilesX; tx++, t++) {
+                int x = tx * TILE_SIZE;
+                if (!buf.regionEquals(prev, x, y, Math.min(TILE_SIZE, width - x), h)) {
+                    changedTiles.set(t);
+                    changed++;
+                    minTx = Math.min(minTx, tx);
+                    minTy = Math.min(minTy, ty);
+                    maxTx = Math.max(maxTx, tx);
+                    maxTy = Math.max(maxTy, ty);
+                }
+            }
+        }
+        comparedTiles += tileCount;
+        unchangedTiles += tileCount - changed;
+
+        if (changed > tileCount * BUSY_FRACTION) {
+            if (++busyFrames >= SUSPEND_AFTER) {
+                suspendedFrames = 0;
+            }
+        } else {
+            busyFrames = 0;
+            suspendedFrames = -1;
+        }
+        if (changed == 0) {
+            dirtyBounds.setBounds(0, 0, 0, 0);
+            return false;
+        }
+        dirtyBounds.setBounds(minTx * TILE_SIZE, minTy * TILE_SIZE,
+                              Math.min((maxTx + 1) * TILE_SIZE, width) - minTx * TILE_SIZE,
+                              Math.min((maxTy + 1) * TILE_SIZE, height) - minTy * TILE_SIZE);
+        return true;
+    }
+
+    private void markAllChanged() {
+        changedTiles.set(0, tilesX * tilesY);
+        dirtyBounds.setBounds(0, 0, width, height);
+    }
+
+    BitSet getChangedTiles() {
+        return changedTiles;
+    }
+
+    int getTilesX() {
+        return tilesX;
+    }
+
+    /*
+     * The union of the changed tiles, in physical pixels. The returned
+     * rectangle is reused by the next update.
+     */
+    Rectangle getDirtyBounds() {
+        return dirtyBounds;
+    }
+}
@@ -0,0 +1,263 @@
+package javafx.embed.swing.modified;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import sun.misc.Cleaner;
+import sun.nio.ch.DirectBuffer;
+
+/**
+ * The back buffer a {@link SynchronizedJFXPanel} receives the pixels of its
+ * scene into, in the physical (scaled) resolution of the scene.
+ * <p>
+ * A heap buffer is a plain {@code TYPE_INT_ARGB} {@link BufferedImage}
+ * whose data array is handed to the scene directly. An off-heap buffer
+ * keeps the pixels in a direct {@link IntBuffer} instead, and blits them to
+ * Swing through a small heap strip image that is refilled for each band of
+ * rows. Off-heap buffers keep large back buffers (e.g. 4K at a scale
+ * factor of 2) out of the Java heap, at the cost of one extra copy per
+ * paint.
+ * <p>
+ * Direct memory is only returned to the system once its buffer is garbage
+ * collected, which may take long after a resize replaced it. A new
+ * off-heap buffer therefore takes over the native memory of the buffer it
+ * replaces if that is large enough, and frees it right away otherwise.
+ * <p>
+ * Instances are accessed on the EDT only.
+ */
+final class FrameBuffer {
+
+    // Rows per blit in off-heap mode. Kept even so that scale factors of
+    // 2 map strips onto whole logical rows.
+    private static final int STRIP_ROWS = 32;
+
+    private final int width;
+    private final int height;
+
+    // Heap mode
+    private final BufferedImage image;
+    private final int data[];
+
+    // Off-heap mode
+    private BufferedImage strip;
+    private int stripData[];
+
+    // The direct memory of an off-heap buffer, possibly larger than needed
+    private ByteBuffer storage;
+
+    private final IntBuffer pixels;
+
+    FrameBuffer(int width, int height, boolean offHeap) {
+        this(width, height, offHeap, null);
+    }
+
+    /*
+     * Creates a buffer that replaces the recycled one, which must not be
+     * used afterwards. In off-heap mode, the direct memory of the recycled
+     * buffer is reused if it is large enough, and freed otherwise.
+     */
+    FrameBuffer(int width, int height, boolean offHeap, FrameBuffer recycled) {
+        this.width = width;
+        this.height = height;
+        ByteBuffer old = (recycled != null) ? recycled.storage : null;
+        if (recycled != null) {
+            recycled.storage = null;
+        }
+        if (offHeap) {
+            image = null;
+            data = null;
+            int bytes = width * height * 4;
+            if ((old != null) && (old.capacity() >= bytes)) {
+                storage = old;
+            } else {
+                free(old);
+                storage = ByteBuffer.allocateDirect(bytes);
+            }
+            ByteBuffer b = storage.duplicate();
+            b.limit(bytes);
+            pixels = b.order(ByteOrder.nativeOrder()).asIntBuffer();
+        } else {
+            free(old);
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            pixels = IntBuffer.wrap(data);
+        }
+    }
+
+    /*
+     * Frees the direct memory of an off-heap buffer right away. The buffer
+     * must not be used afterwards.
+     */
+    void release() {
+        free(storage);
+        storage = null;
+    }
+
+    // Releases direct memory right away instead of when the buffer is
+    // garbage collected. The buffer must not be used afterwards.
+    private static void free(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        Cleaner cleaner = ((DirectBuffer) buffer).cleaner();
+        if (cleaner != null) {
+            cleaner.clean();
+        }
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    boolean isOffHeap() {
+        return image == null;
+    }
+
+    /**
+     * Returns the buffer to pass to {@code EmbeddedSceneInterface.getPixels},
+     * rewound to its start.
+     */
+    IntBuffer getTransferBuffer() {
+        pixels.clear();
+        return pixels;
+    }
+
+    /**
+     * Returns the heap image holding the pixels, or null for an off-heap
+     * buffer.
+     */
+    BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Returns a read-only view of the pixels, independent of the position
+     * and limit of the transfer buffer.
+     */
+    IntBuffer getReadOnlyView() {
+        IntBuffer view = pixels.asReadOnlyBuffer();
+        view.clear();
+        return view;
+    }
+
+    /**
+     * Copies all pixels of the frame into the specified array.
+     */
+    void copyPixels(int dst[]) {
+        pixels.clear();
+        pixels.get(dst, 0, width * height);
+        pixels.clear();
+    }
+
+    /**
+     * Returns whether the pixels in the specified region are identical to
+     * those of the same region of the other buffer, which must have the
+     * same size.
+     */
+    boolean regionEquals(FrameBuffer other, int x, int y, int w, int h) {
+        if ((data != null) && (other.data != null)) {
+            int a[] = data;
+            int b[] = other.data;
+            for (int row = y; row < y + h; row++) {
+                for (int i = row * width + x, end = i + w; i < end; i++) {
+                    if (a[i] != b[i]) {
+                        return false;
+                    }
+                }
+            }
+        } else {
+            for (int row = y; row < y + h; row++) {
+                for (int i = row * width + x, end = i + w; i < end; i++) {
+                    if (pixels.get(i) != other.pixels.get(i)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Draws the whole frame into the specified logical bounds. Only the
+     * part of the frame within the clip of the graphics is transferred.
+     */
+    void draw(Graphics g, int dx, int dy, int dw, int dh) {
+        if (image != null) {
+            g.drawImage(image, dx, dy, dw, dh, null);
+            return;
+        }
+        Graphics2D g2d = (Graphics2D) g.create();
+        try {
+            g2d.translate(dx, dy);
+            g2d.scale((double) dw / width, (double) dh / height);
+            // Skip the strips outside the clip, e.g. when only a few
+            // tiles of the panel are repainted
+            int y0 = 0;
+            int y1 = height;
+            Rectangle clip = g2d.getClipBounds();
+            if (clip != null) {
+                y0 = Math.max(0, (clip.y / STRIP_ROWS) * STRIP_ROWS);
+                y1 = Math.min(height, clip.y + clip.height + 1);
+            }
+            for (int y = y0; y < y1; y += STRIP_ROWS) {
+                int rows = Math.min(STRIP_ROWS, height - y);
+                g2d.drawImage(fillStrip(y, rows),
+                              0, y, width, y + rows,
+                              0, 0, width, rows, null);
+            }
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    // Copies a band of rows of the direct buffer into the heap strip
+    private BufferedImage fillStrip(int y, int rows) {
+        if (strip == null) {
+            strip = new BufferedImage(width, Math.min(STRIP_ROWS, height),
+                                      BufferedImage.TYPE_INT_ARGB);
+            stripData = ((DataBufferInt) strip.getRaster().getDataBuffer()).getData();
+        }
+        pixels.clear();
+        pixels.position(y * width);
+        pixels.get(stripData, 0, rows * width);
+        return strip;
+    }
+
+    /**
+     * Initializes this buffer with the contents of the old buffer, scaled
+     * to the given size, so that a resized panel does not flash blank
+     * before the scene delivers its next frame.
+     */
+    void copyFrom(FrameBuffer old, int oldW, int oldH) {
+        if (image != null) {
+            Graphics g = image.getGraphics();
+            try {
+                old.draw(g, 0, 0, oldW, oldH);
+            } finally {
+                g.dispose();
+            }
+        } else if (oldW == old.width && oldH == old.height) {
+            // No Graphics can render into a direct buffer, so only unscaled
+            // content is carried over, row by row
+            IntBuffer src = old.pixels;
+            int w = Math.min(width, old.width);
+            int h = Math.min(height, old.height);
+            for (int y = 0; y < h; y++) {
+                src.limit(y * old.width + w).position(y * old.width);
+                pixels.limit(y * width + w).position(y * width);
+                pixels.put(src);
+            }
+            src.clear();
+            pixels.clear();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package javafx.embed.swing.modified;
+
+import java.awt.Rectangle;
+import java.nio.IntBuffer;
+import java.util.EventObject;
+
+/**
+ * An event which indicates that the JavaFX content of a
+ * {@link SynchronizedJFXPanel} has changed.
+ * <p>
+ * The event gives direct, read-only access to the back buffer of the panel,
+ * without copying it. All coordinates are in physical pixels of the back
+ * buffer, which is the logical size of the panel multiplied by its scale
+ * factor.
+ *
+ * @see FrameListener
+ */
+public class FrameEvent extends EventObject {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long frameNumber;
+    private final Rectangle dirtyBounds;
+    private final transient IntBuffer pixels;
+    private final int width;
+    private final int height;
+    private final int scaleFactor;
+
+    FrameEvent(SynchronizedJFXPanel source, long frameNumber, Rectangle dirtyBounds,
+               IntBuffer pixels, int width, int height, int scaleFactor)
+    {
+        super(source);
+        this.frameNumber = frameNumber;
+        this.dirtyBounds = dirtyBounds;
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.scaleFactor = scaleFactor;
+    }
+
+    /**
+     * Returns the panel whose content has changed.
+     *
+     * @return the source panel
+     */
+    public SynchronizedJFXPanel getPanel() {
+        return (SynchronizedJFXPanel) getSource();
+    }
+
+    /**
+     * Returns the number of the latest frame received by the panel. Frames
+     * are numbered consecutively from the creation of the panel; a gap
+     * between two events delivered to the same listener means that several
+     * frames were combined into one event.
+     *
+     * @return the frame number
+     */
+    public long getFrameNumber() {
+        return frameNumber;
+    }
+
+    /**
+     * Returns the bounds of the area that changed since the previous event
+     * delivered to the same listener.
+     *
+     * @return the dirty bounds in physical pixels
+     */
+    public Rectangle getDirtyBounds() {
+        return new Rectangle(dirtyBounds);
+    }
+
+    /**
+     * Returns a read-only view of the pixels of the back buffer, in
+     * {@code INT_ARGB} format, row by row with a scanline stride equal to
+     * {@link #getWidth()}. The view is only valid until the listener
+     * returns.
+     *
+     * @return the pixels of the current frame
+     */
+    public IntBuffer getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Returns the width of the back buffer in physical pixels.
+     *
+     * @return the frame width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the back buffer in physical pixels.
+     *
+     * @return the frame height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of physical pixels per logical pixel of the panel
+     * along each axis. Physical coordinates divided by the scale factor
+     * are coordinates relative to the panel.
+     *
+     * @return the scale factor
+     */
+    public int getScaleFactor() {
+        return scaleFactor;
+    }
+}
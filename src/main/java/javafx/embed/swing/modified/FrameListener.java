@@ -0,0 +1,23 @@
+package javafx.embed.swing.modified;
+
+import java.util.EventListener;
+
+/**
+ * The listener interface for receiving notifications about new frames of
+ * the JavaFX content of a {@link SynchronizedJFXPanel}.
+ *
+ * @see SynchronizedJFXPanel#addFrameListener(FrameListener, long)
+ */
+public interface FrameListener extends EventListener {
+
+    /**
+     * Invoked on the event dispatch thread after the panel received one or
+     * more new frames. The pixels of the event are only valid for the
+     * duration of this call; listeners that need them later must copy them.
+     * Listeners should return quickly, as they run between paints of all
+     * Swing components.
+     *
+     * @param e the event describing the new frame
+     */
+    void frameAvailable(FrameEvent e);
+}
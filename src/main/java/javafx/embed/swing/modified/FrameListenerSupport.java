@@ -0,0 +1,141 @@
+package javafx.embed.swing.modified;
+
+import java.awt.Rectangle;
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Keeps track of the {@link FrameListener}s of a {@link SynchronizedJFXPanel}
+ * and delivers {@link FrameEvent}s to them.
+ * <p>
+ * The paint path only records dirty bounds and posts at most one dispatch
+ * event per EDT cycle, so listeners never run while the panel paints.
+ * Each listener may be throttled to a minimum interval between events; the
+ * dirty bounds of the frames it skips are merged into its next event.
+ */
+final class FrameListenerSupport {
+
+    private final SynchronizedJFXPanel panel;
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    // Accessed on EDT only
+    private long frameNumber = 0;
+    private boolean dispatchPending = false;
+    private Timer throttleTimer;
+
+    FrameListenerSupport(SynchronizedJFXPanel panel) {
+        this.panel = panel;
+    }
+
+    void add(FrameListener listener, long minIntervalMillis) {
+        registrations.add(new Registration(listener, minIntervalMillis));
+    }
+
+    void remove(FrameListener listener) {
+        for (Registration r : registrations) {
+            if (r.listener == listener) {
+                registrations.remove(r);
+                return;
+            }
+        }
+    }
+
+    FrameListener[] getListeners() {
+        FrameListener listeners[] = new FrameListener[registrations.size()];
+        int i = 0;
+        for (Registration r : registrations) {
+            if (i == listeners.length) {
+                break;
+            }
+            listeners[i++] = r.listener;
+        }
+        return listeners;
+    }
+
+    long getFrameNumber() {
+        return frameNumber;
+    }
+
+    /*
+     * Called on EDT when the back buffer received a new frame. The bounds
+     * are in physical pixels of the back buffer.
+     */
+    void frameReceived(int x, int y, int w, int h) {
+        frameNumber++;
+        if (registrations.isEmpty()) {
+            return;
+        }
+        for (Registration r : registrations) {
+            r.dirty.add(new Rectangle(x, y, w, h));
+        }
+        if (!dispatchPending) {
+            dispatchPending = true;
+            SwingUtilities.invokeLater(this::dispatch);
+        }
+    }
+
+    private void dispatch() {
+        dispatchPending = false;
+        FrameBuffer pixels = panel.getFrameBuffer();
+        if (pixels == null) {
+            // Keep the dirty bounds until there is a frame to show again
+            return;
+        }
+        Rectangle bounds = new Rectangle(0, 0, pixels.getWidth(), pixels.getHeight());
+        long now = System.nanoTime();
+        long nextDue = Long.MAX_VALUE;
+        for (Registration r : registrations) {
+            if (r.dirty.isEmpty()) {
+                continue;
+            }
+            long due = r.lastDelivery + r.minInterval;
+            if (r.lastDelivery != 0 && now - due < 0) {
+                nextDue = Math.min(nextDue, due);
+                continue;
+            }
+            Rectangle dirty = r.dirty.intersection(bounds);
+            r.dirty.setBounds(0, 0, -1, -1);
+            r.lastDelivery = now;
+            if (dirty.isEmpty()) {
+                continue;
+            }
+            IntBuffer view = pixels.getReadOnlyView();
+            try {
+                r.listener.frameAvailable(new FrameEvent(panel, frameNumber, dirty,
+                        view, pixels.getWidth(), pixels.getHeight(),
+                        panel.getFrameScaleFactor()));
+            } catch (Throwable th) {
+                th.printStackTrace();
+            }
+        }
+        if (nextDue != Long.MAX_VALUE) {
+            scheduleDispatch(TimeUnit.NANOSECONDS.toMillis(nextDue - now) + 1);
+        }
+    }
+
+    private void scheduleDispatch(long delayMillis) {
+        if (throttleTimer == null) {
+            throttleTimer = new Timer(0, e -> dispatch());
+            throttleTimer.setRepeats(false);
+        }
+        throttleTimer.setInitialDelay((int) Math.min(Integer.MAX_VALUE, delayMillis));
+        throttleTimer.restart();
+    }
+
+    private static final class Registration {
+        final FrameListener listener;
+        final long minInterval;
+        // Accessed on EDT only
+        final Rectangle dirty = new Rectangle(0, 0, -1, -1);
+        long lastDelivery = 0;
+
+        Registration(FrameListener listener, long minIntervalMillis) {
+            this.listener = listener;
+            this.minInterval = TimeUnit.MILLISECONDS.toNanos(minIntervalMillis);
+        }
+    }
+}
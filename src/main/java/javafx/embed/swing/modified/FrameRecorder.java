@@ -0,0 +1,323 @@
+package javafx.embed.swing.modified;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+import sun.misc.Cleaner;
+import sun.nio.ch.DirectBuffer;
+
+/**
+ * Records the frames painted by a {@link SynchronizedJFXPanel}, e.g. to
+ * attach to a support ticket or to analyze rendering performance.
+ * <p>
+ * Each frame the panel paints is copied into one of a fixed number of
+ * pooled buffers and handed to a background writer thread. If all buffers
+ * are still waiting to be written, the frame is dropped rather than making
+ * the event dispatch thread wait, so recording never stalls painting. The
+ * numbers of captured and dropped frames are available at any time.
+ * <p>
+ * Frames are written either as a sequence of PNG files, or appended to a
+ * single raw file through memory mapping. Each record of a raw file has a
+ * 16 byte header holding the capture time in nanoseconds as a {@code long},
+ * followed by the width and height as {@code int}s, and then the pixels as
+ * {@code INT_ARGB} values; all values are in native byte order.
+ * <p>
+ * A recorder is attached with
+ * {@link SynchronizedJFXPanel#setFrameRecorder(FrameRecorder)}, and must be
+ * {@linkplain #close() closed} once recording is done.
+ */
+public final class FrameRecorder implements AutoCloseable {
+
+    /**
+     * The output formats supported by {@code FrameRecorder}.
+     */
+    public enum Format {
+        /**
+         * One PNG file per frame, named {@code frame-NNNNNN.png}, in the
+         * target directory.
+         */
+        PNG_SEQUENCE,
+        /**
+         * All frames appended to the target file as raw pixels.
+         */
+        RAW
+    }
+
+    private static final int RAW_HEADER_BYTES = 16;
+    // Queued by close() to stop the writer thread. The writer is not
+    // interrupted, as that would close the raw file channel.
+    private static final Frame END_OF_STREAM = new Frame();
+    // Raw files are mapped in regions of at least this size, so that most
+    // frames don't need a new mapping
+    private static final long RAW_MAP_REGION = 64L * 1024 * 1024;
+
+    private final File target;
+    private final Format format;
+
+    private final BlockingQueue<Frame> freeFrames;
+    private final BlockingQueue<Frame> pendingFrames;
+    private final Thread writer;
+    // Written with this held, so that no frame is queued after END_OF_STREAM
+    private volatile boolean closed = false;
+    private volatile IOException failure;
+
+    private final AtomicLong capturedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+
+    // Accessed on writer thread only
+    private RandomAccessFile rawFile;
+    private MappedByteBuffer rawRegion;
+    private long rawRegionStart;
+    private long rawLength;
+
+    /**
+     * Creates a new recorder and starts its writer thread.
+     *
+     * @param target the directory to write PNG files to, or the raw file to
+     *        write, depending on the format
+     * @param format the output format
+     * @param bufferCount the number of frames that can wait to be written
+     *        before further frames are dropped
+     * @throws IOException if the target cannot be created
+     * @throws IllegalArgumentException if {@code bufferCount} is not positive
+     */
+    public FrameRecorder(File target, Format format, int bufferCount) throws IOException {
+        if (bufferCount <= 0) {
+            throw new IllegalArgumentException("Invalid buffer count: " + bufferCount);
+        }
+        this.target = target;
+        this.format = format;
+        if (format == Format.PNG_SEQUENCE) {
+            if (!target.isDirectory() && !target.mkdirs()) {
+                throw new IOException("Cannot create directory " + target);
+            }
+        } else {
+            rawFile = new RandomAccessFile(target, "rw");
+            rawFile.setLength(0);
+        }
+        freeFrames = new ArrayBlockingQueue<>(bufferCount);
+        // One extra slot for END_OF_STREAM
+        pendingFrames = new ArrayBlockingQueue<>(bufferCount + 1);
+        for (int i = 0; i < bufferCount; i++) {
+            freeFrames.add(new Frame());
+        }
+        writer = new Thread(this::writeFrames, "SynchronizedJFXPanel frame recorder");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns the number of frames copied for writing so far.
+     *
+     * @return the number of captured frames
+     */
+    public long getCapturedFrameCount() {
+        return capturedCount.get();
+    }
+
+    /**
+     * Returns the number of frames that were dropped because the writer
+     * thread could not keep up.
+     *
+     * @return the number of dropped frames
+     */
+    public long getDroppedFrameCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the number of frames written to the target so far.
+     *
+     * @return the number of written frames
+     */
+    public long getWrittenFrameCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * Returns the error that stopped the writer thread, if any. Frames
+     * captured after a failure are dropped.
+     *
+     * @return the write error, or null
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /*
+     * Called on EDT after the panel received a new frame. Never blocks.
+     */
+    void capture(FrameBuffer pixels) {
+        if (closed) {
+            return;
+        }
+        Frame frame = (failure == null) ? freeFrames.poll() : null;
+        if (frame == null) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        frame.copyFrom(pixels);
+        synchronized (this) {
+            if (closed) {
+                // close() was called during the copy
+                freeFrames.add(frame);
+                return;
+            }
+            pendingFrames.add(frame);
+            capturedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stops recording. Frames captured before this call are written out
+     * before this method returns.
+     *
+     * @throws IOException if writing the frames failed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pendingFrames.add(END_OF_STREAM);
+        }
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void writeFrames() {
+        try {
+            while (true) {
+                Frame frame;
+                try {
+                    frame = pendingFrames.take();
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if (frame == END_OF_STREAM) {
+                    break;
+                }
+                try {
+                    write(frame);
+                    writtenCount.incrementAndGet();
+                } finally {
+                    freeFrames.add(frame);
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            // Record it, so that capture() stops queueing frames
+            failure = new IOException("Frame writer failed", e);
+        } finally {
+            closeRawFile();
+        }
+    }
+
+    private void write(Frame frame) throws IOException {
+        if (format == Format.PNG_SEQUENCE) {
+            File file = new File(target, String.format("frame-%06d.png", writtenCount.get()));
+            ImageIO.write(frame.image, "png", file);
+            return;
+        }
+        int pixelCount = frame.width * frame.height;
+        long recordBytes = RAW_HEADER_BYTES + 4L * pixelCount;
+        if (rawRegion == null || rawLength + recordBytes > rawRegionStart + rawRegion.capacity()) {
+            if (rawRegion != null) {
+                MappedByteBuffer full = rawRegion;
+                rawRegion = null;
+                unmap(full);
+            }
+            rawRegionStart = rawLength;
+            rawRegion = rawFile.getChannel().map(FileChannel.MapMode.READ_WRITE,
+                    rawRegionStart, Math.max(RAW_MAP_REGION, recordBytes));
+            rawRegion.order(ByteOrder.nativeOrder());
+        }
+        rawRegion.position((int) (rawLength - rawRegionStart));
+        rawRegion.putLong(frame.timestamp);
+        rawRegion.putInt(frame.width);
+        rawRegion.putInt(frame.height);
+        rawRegion.asIntBuffer().put(frame.data, 0, pixelCount);
+        rawLength += recordBytes;
+    }
+
+    private void closeRawFile() {
+        if (rawFile == null) {
+            return;
+        }
+        try {
+            if (rawRegion != null) {
+                MappedByteBuffer last = rawRegion;
+                rawRegion = null;
+                last.force();
+                unmap(last);
+            }
+            // Drop the unused tail of the last mapped region. This must
+            // happen after unmapping, as Windows cannot truncate a file
+            // while part of it is mapped.
+            rawFile.setLength(rawLength);
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        } finally {
+            try {
+                rawFile.close();
+            } catch (IOException ignore) {
+            }
+            rawFile = null;
+        }
+    }
+
+    // Releases a mapping right away instead of when the buffer is garbage
+    // collected. The buffer must not be used afterwards.
+    private static void unmap(MappedByteBuffer region) {
+        Cleaner cleaner = ((DirectBuffer) region).cleaner();
+        if (cleaner != null) {
+            cleaner.clean();
+        }
+    }
+
+    private static final class Frame {
+        long timestamp;
+        int width;
+        int height;
+        BufferedImage image;
+        int data[];
+
+        void copyFrom(FrameBuffer pixels) {
+            timestamp = System.nanoTime();
+            if (image == null || width != pixels.getWidth() || height != pixels.getHeight()) {
+                width = pixels.getWidth();
+                height = pixels.getHeight();
+                image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            }
+            pixels.copyPixels(data);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package javafx.embed.swing.modified;
+
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Receives the frames of a {@link FrameStreamServer} and sends input events
+ * back to it.
+ * <p>
+ * Frames are decoded on a background thread into a {@link BufferedImage}
+ * that is reused until the size of the streamed panel changes. The image is
+ * handed to the {@link Listener} after each update; it must not be used
+ * outside of the callback without copying, as the next update overwrites
+ * it. The client can be used directly by a viewer, or to verify the
+ * streamed output of a panel.
+ */
+public final class FrameStreamClient implements AutoCloseable {
+
+    /**
+     * A callback notified of received frames, on the client's receiver
+     * thread.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called after an update has been applied to the frame.
+         *
+         * @param frame the current frame, in {@code INT_ARGB} format
+         * @param x the x coordinate of the updated area
+         * @param y the y coordinate of the updated area
+         * @param width the width of the updated area
+         * @param height the height of the updated area
+         */
+        void frameUpdated(BufferedImage frame, int x, int y, int width, int height);
+    }
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final Listener listener;
+    private final Thread receiver;
+    private volatile boolean closed = false;
+    private volatile IOException failure;
+    private volatile int scaleFactor = 1;
+
+    // Accessed on receiver thread only
+    private BufferedImage frame;
+    private int frameData[];
+
+    /**
+     * Connects to a server on the loopback interface and starts receiving
+     * frames.
+     *
+     * @param port the port of the server
+     * @param listener the listener notified of received frames
+     * @throws IOException if the connection cannot be established
+     */
+    public FrameStreamClient(int port, Listener listener) throws IOException {
+        this.listener = listener;
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        receiver = new Thread(this::receiveFrames, "FrameStreamClient receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    /**
+     * Returns the error that stopped receiving frames, if any.
+     *
+     * @return the receive error, or null
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns the scale factor of the streamed frames, i.e. the number of
+     * frame pixels per logical pixel of the panel along each axis.
+     *
+     * @return the scale factor, or 1 before the first frame is received
+     */
+    public int getScaleFactor() {
+        return scaleFactor;
+    }
+
+    /**
+     * Sends a mouse event to the streamed panel. Coordinates are in pixels
+     * of the received frame; the server converts them to coordinates of the
+     * panel. Events of buttons other than the first three are ignored, as
+     * the server does not accept them.
+     *
+     * @param e the event to send
+     * @throws IOException if the event cannot be sent
+     */
+    public synchronized void sendMouseEvent(MouseEvent e) throws IOException {
+        if (e.getButton() > MouseEvent.BUTTON3) {
+            return;
+        }
+        out.writeByte(FrameStreamProtocol.MOUSE_EVENT);
+        out.writeInt(e.getID());
+        out.writeInt(e.getX());
+        out.writeInt(e.getY());
+        out.writeInt(e.getModifiersEx());
+        out.writeInt(e.getButton());
+        out.writeInt(e.getClickCount());
+        out.writeBoolean(e.isPopupTrigger());
+        out.writeDouble((e instanceof MouseWheelEvent)
+                        ? ((MouseWheelEvent) e).getPreciseWheelRotation() : 0);
+        out.flush();
+    }
+
+    /**
+     * Sends a key event to the streamed panel.
+     *
+     * @param e the event to send
+     * @throws IOException if the event cannot be sent
+     */
+    public synchronized void sendKeyEvent(KeyEvent e) throws IOException {
+        out.writeByte(FrameStreamProtocol.KEY_EVENT);
+        out.writeInt(e.getID());
+        out.writeInt(e.getKeyCode());
+        out.writeChar(e.getKeyChar());
+        out.writeInt(e.getModifiersEx());
+        out.writeInt(e.getKeyLocation());
+        out.flush();
+    }
+
+    /**
+     * Disconnects from the server.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    private void receiveFrames() {
+        Inflater inflater = new Inflater();
+        byte compressed[] = new byte[0];
+        byte raw[] = new byte[0];
+        int tileSize = 0;
+        int maxLen = 0;
+        try {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            if (in.readInt() != FrameStreamProtocol.MAGIC
+                    || in.readInt() != FrameStreamProtocol.VERSION)
+            {
+                throw new IOException("Unsupported frame stream");
+            }
+            while (true) {
+                byte type = in.readByte();
+                switch (type) {
+                    case FrameStreamProtocol.FRAME_SIZE:
+                        int w = in.readInt();
+                        int h = in.readInt();
+                        tileSize = in.readInt();
+                        int scale = in.readInt();
+                        if (w < 0 || h < 0 || (long) w * h > Integer.MAX_VALUE
+                                || tileSize <= 0 || tileSize > FrameStreamProtocol.MAX_TILE_SIZE
+                                || scale <= 0)
+                        {
+                            throw new IOException("Invalid frame size " + w + "x" + h
+                                    + ", tile size " + tileSize + ", scale " + scale);
+                        }
+                        maxLen = FrameStreamProtocol.maxDeflatedLength(tileSize * tileSize * 4);
+                        scaleFactor = scale;
+                        frame = new BufferedImage(Math.max(w, 1), Math.max(h, 1),
+                                                  BufferedImage.TYPE_INT_ARGB);
+                        frameData = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+                        raw = new byte[tileSize * tileSize * 4];
+                        break;
+                    case FrameStreamProtocol.FRAME_UPDATE:
+                        int count = in.readInt();
+                        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+                        int maxX = 0, maxY = 0;
+                        for (int i = 0; i < count; i++) {
+                            int x = in.readInt();
+                            int y = in.readInt();
+                            int tw = in.readInt();
+                            int th = in.readInt();
+                            int len = in.readInt();
+                            if (frame == null || tw <= 0 || th <= 0
+                                    || tw > tileSize || th > tileSize || x < 0 || y < 0
+                                    || x + tw > frame.getWidth() || y + th > frame.getHeight())
+                            {
+                                throw new IOException("Invalid tile " + x + "," + y);
+                            }
+                            if (len < 0 || len > maxLen) {
+                                throw new IOException("Invalid tile data length: " + len);
+                            }
+                            if (compressed.length < len) {
+                                compressed = new byte[len];
+                            }
+                            in.readFully(compressed, 0, len);
+                            inflateTile(inflater, compressed, len, raw, tw * th * 4);
+                            copyTile(raw, x, y, tw, th);
+                            minX = Math.min(minX, x);
+                            minY = Math.min(minY, y);
+                            maxX = Math.max(maxX, x + tw);
+                            maxY = Math.max(maxY, y + th);
+                        }
+                        if (count > 0) {
+                            listener.frameUpdated(frame, minX, minY, maxX - minX, maxY - minY);
+                        }
+                        break;
+                    default:
+                        throw new IOException("Unknown frame message type: " + type);
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // Server closed the stream or client closed
+        } catch (IOException e) {
+            if (!closed) {
+                failure = e;
+            }
+        } finally {
+            inflater.end();
+            try {
+                socket.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    private static void inflateTile(Inflater inflater, byte compressed[], int len,
+                                    byte raw[], int rawLen) throws IOException
+    {
+        inflater.reset();
+        inflater.setInput(compressed, 0, len);
+        try {
+            int n = 0;
+            while (n < rawLen && !inflater.finished()) {
+                int r = inflater.inflate(raw, n, rawLen - n);
+                if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += r;
+            }
+            if (n != rawLen) {
+                throw new IOException("Truncated tile data");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt tile data", e);
+        }
+    }
+
+    private void copyTile(byte raw[], int x, int y, int w, int h) {
+        int scan = frame.getWidth();
+        int i = 0;
+        for (int row = 0; row < h; row++) {
+            int p = (y + row) * scan + x;
+            for (int end = p + w; p < end; p++) {
+                frameData[p] = ((raw[i] & 0xff) << 24) | ((raw[i + 1] & 0xff) << 16)
+                             | ((raw[i + 2] & 0xff) << 8) | (raw[i + 3] & 0xff);
+                i += 4;
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package javafx.embed.swing.modified;
+
+/**
+ * Message types of the wire protocol between {@link FrameStreamServer} and
+ * {@link FrameStreamClient}. All values are written in big-endian order
+ * with {@link java.io.DataOutputStream}.
+ * <p>
+ * Server to client:
+ * <pre>
+ *     FRAME_SIZE:   int width, int height, int tileSize, int scaleFactor
+ *     FRAME_UPDATE: int tileCount, then per tile
+ *                   int x, int y, int width, int height,
+ *                   int length, byte[length] deflated INT_ARGB pixels
+ * </pre>
+ * Frames are sent in physical pixels, i.e. the logical size of the panel
+ * times {@code scaleFactor}. The deflated length of a tile never exceeds
+ * {@link #maxDeflatedLength(int)} of its raw length.
+ * <p>
+ * Client to server:
+ * <pre>
+ *     MOUSE_EVENT: int id, int x, int y, int modifiersEx, int button,
+ *                  int clickCount, boolean popupTrigger,
+ *                  double preciseWheelRotation
+ *     KEY_EVENT:   int id, int keyCode, char keyChar, int modifiersEx,
+ *                  int keyLocation
+ * </pre>
+ * Mouse coordinates are physical pixels of the received frame; the server
+ * divides them by the scale factor of its latest frame. The server drops a
+ * client that sends an event AWT would reject, e.g. an unknown id, a
+ * button other than 0 to 3, or a {@code KEY_TYPED} event with a key code.
+ */
+final class FrameStreamProtocol {
+    private FrameStreamProtocol() {} // no instances
+
+    static final int MAGIC = 0x4a465853; // "JFXS"
+    static final int VERSION = 2;
+
+    static final int MAX_TILE_SIZE = 1024;
+
+    static final byte FRAME_SIZE = 1;
+    static final byte FRAME_UPDATE = 2;
+
+    static final byte MOUSE_EVENT = 1;
+    static final byte KEY_EVENT = 2;
+
+    /*
+     * Returns the maximum length of the zlib stream Deflater produces for
+     * rawLength bytes of input, as computed by zlib's compressBound().
+     */
+    static int maxDeflatedLength(int rawLength) {
+        return rawLength + (rawLength >> 12) + (rawLength >> 14) + (rawLength >> 25) + 13;
+    }
+}
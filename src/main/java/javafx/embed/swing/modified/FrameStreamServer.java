@@ -0,0 +1,452 @@
+package javafx.embed.swing.modified;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.IntBuffer;
+import java.util.BitSet;
+import java.util.zip.Deflater;
+import javax.swing.SwingUtilities;
+
+/**
+ * Mirrors the content of a {@link SynchronizedJFXPanel} to another process
+ * over a loopback socket, e.g. to show it in a local supervisor UI.
+ * <p>
+ * The frame is divided into square tiles. When the panel receives a new
+ * frame, the tiles within its dirty bounds are compared with the last
+ * frame seen by the server, and only tiles that differ are sent, each
+ * compressed with {@link Deflater}. If the client reads more slowly than
+ * frames arrive, changed tiles accumulate and are sent once with their
+ * latest content, so a slow client never causes a backlog.
+ * <p>
+ * Mouse and key events sent back by the client are dispatched on the event
+ * dispatch thread through the same forwarding path the panel uses for its
+ * own input events.
+ * <p>
+ * The server accepts one client at a time; a new connection replaces the
+ * current one. {@link FrameStreamClient} implements the client side of the
+ * protocol.
+ */
+public final class FrameStreamServer implements AutoCloseable {
+
+    private final SynchronizedJFXPanel panel;
+    private final int tileSize;
+    private final ServerSocket serverSocket;
+    private final FrameListener frameListener = this::frameAvailable;
+    private final Thread acceptThread;
+    private volatile boolean closed = false;
+
+    private final Object frameLock = new Object();
+    // Guarded by frameLock: the latest frame and the tiles changed since
+    // they were last sent
+    private int frame[] = new int[0];
+    private int frameWidth = 0;
+    private int frameHeight = 0;
+    private int frameScale = 1;
+    private int tilesX = 0;
+    private int tilesY = 0;
+    private final BitSet dirtyTiles = new BitSet();
+    private boolean sizeChanged = false;
+    private Socket client;
+
+    /**
+     * Creates a server streaming the specified panel on a loopback port.
+     *
+     * @param panel the panel to mirror
+     * @param port the port to listen on, or 0 for any free port
+     * @param tileSize the edge length of the tiles frames are divided into
+     * @param minIntervalMillis the minimum time between two frame updates
+     * @throws IOException if the server socket cannot be opened
+     * @throws IllegalArgumentException if {@code tileSize} is not positive
+     *         or larger than 1024
+     */
+    public FrameStreamServer(SynchronizedJFXPanel panel, int port, int tileSize,
+                             long minIntervalMillis) throws IOException
+    {
+        if (tileSize <= 0 || tileSize > FrameStreamProtocol.MAX_TILE_SIZE) {
+            throw new IllegalArgumentException("Invalid tile size: " + tileSize);
+        }
+        this.panel = panel;
+        this.tileSize = tileSize;
+        serverSocket = new ServerSocket(port, 1, InetAddress.getLoopbackAddress());
+        acceptThread = new Thread(this::acceptClients, "SynchronizedJFXPanel stream server");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        panel.addFrameListener(frameListener, minIntervalMillis);
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the local port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops streaming and disconnects the current client.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        panel.removeFrameListener(frameListener);
+        try {
+            serverSocket.close();
+        } catch (IOException ignore) {
+        }
+        synchronized (frameLock) {
+            closeClient();
+            frameLock.notifyAll();
+        }
+    }
+
+    /*
+     * Called on EDT. Compares the dirty tiles with the last frame and copies
+     * those that changed; all sending happens on the client's thread.
+     */
+    private void frameAvailable(FrameEvent e) {
+        IntBuffer pixels = e.getPixels();
+        int w = e.getWidth();
+        int h = e.getHeight();
+        synchronized (frameLock) {
+            Rectangle dirty = e.getDirtyBounds();
+            if (w != frameWidth || h != frameHeight) {
+                frameWidth = w;
+                frameHeight = h;
+                frame = new int[w * h];
+                tilesX = (w + tileSize - 1) / tileSize;
+                tilesY = (h + tileSize - 1) / tileSize;
+                dirty.setBounds(0, 0, w, h);
+                dirtyTiles.clear();
+                sizeChanged = true;
+            }
+            if (e.getScaleFactor() != frameScale) {
+                frameScale = e.getScaleFactor();
+                sizeChanged = true;
+            }
+            int tx0 = dirty.x / tileSize;
+            int ty0 = dirty.y / tileSize;
+            int tx1 = (dirty.x + dirty.width + tileSize - 1) / tileSize;
+            int ty1 = (dirty.y + dirty.height + tileSize - 1) / tileSize;
+            boolean changed = false;
+            for (int ty = ty0; ty < ty1; ty++) {
+                for (int tx = tx0; tx < tx1; tx++) {
+                    if (updateTile(pixels, tx, ty)) {
+                        dirtyTiles.set(ty * tilesX + tx);
+                        changed = true;
+                    }
+                }
+            }
+            if (changed || sizeChanged) {
+                frameLock.notifyAll();
+            }
+        }
+    }
+
+    // Called with frameLock held. Returns whether the tile changed.
+    private boolean updateTile(IntBuffer pixels, int tx, int ty) {
+        int x0 = tx * tileSize;
+        int y0 = ty * tileSize;
+        int x1 = Math.min(x0 + tileSize, frameWidth);
+        int y1 = Math.min(y0 + tileSize, frameHeight);
+        boolean changed = false;
+        for (int y = y0; y < y1; y++) {
+            int row = y * frameWidth;
+            for (int i = row + x0, end = row + x1; i < end; i++) {
+                int p = pixels.get(i);
+                if (frame[i] != p) {
+                    frame[i] = p;
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private void acceptClients() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!closed) {
+                    e.printStackTrace();
+                }
+                return;
+            }
+            synchronized (frameLock) {
+                closeClient();
+                client = socket;
+                // A new client needs the whole frame
+                sizeChanged = true;
+                dirtyTiles.set(0, tilesX * tilesY);
+                frameLock.notifyAll();
+            }
+            Thread sender = new Thread(() -> sendFrames(socket),
+                                       "SynchronizedJFXPanel stream sender");
+            sender.setDaemon(true);
+            sender.start();
+            Thread receiver = new Thread(() -> receiveInput(socket),
+                                         "SynchronizedJFXPanel stream input");
+            receiver.setDaemon(true);
+            receiver.start();
+        }
+    }
+
+    // Called with frameLock held
+    private void closeClient() {
+        if (client != null) {
+            try {
+                client.close();
+            } catch (IOException ignore) {
+            }
+            client = null;
+        }
+    }
+
+    private void sendFrames(Socket socket) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte raw[] = new byte[tileSize * tileSize * 4];
+        byte compressed[] = new byte[FrameStreamProtocol.maxDeflatedLength(raw.length)];
+        int tileRects[] = new int[0];
+        int tilePixels[] = new int[0];
+        try {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+            out.writeInt(FrameStreamProtocol.MAGIC);
+            out.writeInt(FrameStreamProtocol.VERSION);
+            while (true) {
+                int width, height, scale, count;
+                boolean sendSize;
+                synchronized (frameLock) {
+                    while (!closed && client == socket && !sizeChanged && dirtyTiles.isEmpty()) {
+                        frameLock.wait();
+                    }
+                    if (closed || client != socket) {
+                        return;
+                    }
+                    width = frameWidth;
+                    height = frameHeight;
+                    scale = frameScale;
+                    sendSize = sizeChanged;
+                    sizeChanged = false;
+                    count = dirtyTiles.cardinality();
+                    if (tileRects.length < count * 4) {
+                        tileRects = new int[count * 4];
+                        tilePixels = new int[count * tileSize * tileSize];
+                    }
+                    // Copy the changed tiles out so the EDT is not held up
+                    // while they are compressed and sent
+                    int n = 0;
+                    for (int t = dirtyTiles.nextSetBit(0); t >= 0; t = dirtyTiles.nextSetBit(t + 1)) {
+                        int x = (t % tilesX) * tileSize;
+                        int y = (t / tilesX) * tileSize;
+                        int w = Math.min(tileSize, width - x);
+                        int h = Math.min(tileSize, height - y);
+                        tileRects[n * 4] = x;
+                        tileRects[n * 4 + 1] = y;
+                        tileRects[n * 4 + 2] = w;
+                        tileRects[n * 4 + 3] = h;
+                        int base = n * tileSize * tileSize;
+                        for (int row = 0; row < h; row++) {
+                            System.arraycopy(frame, (y + row) * width + x,
+                                             tilePixels, base + row * w, w);
+                        }
+                        n++;
+                    }
+                    dirtyTiles.clear();
+                }
+                if (sendSize) {
+                    out.writeByte(FrameStreamProtocol.FRAME_SIZE);
+                    out.writeInt(width);
+                    out.writeInt(height);
+                    out.writeInt(tileSize);
+                    out.writeInt(scale);
+                }
+                out.writeByte(FrameStreamProtocol.FRAME_UPDATE);
+                out.writeInt(count);
+                for (int i = 0; i < count; i++) {
+                    int w = tileRects[i * 4 + 2];
+                    int h = tileRects[i * 4 + 3];
+                    int base = i * tileSize * tileSize;
+                    int len = 0;
+                    for (int p = base, end = base + w * h; p < end; p++) {
+                        int argb = tilePixels[p];
+                        raw[len++] = (byte) (argb >>> 24);
+                        raw[len++] = (byte) (argb >>> 16);
+                        raw[len++] = (byte) (argb >>> 8);
+                        raw[len++] = (byte) argb;
+                    }
+                    deflater.reset();
+                    deflater.setInput(raw, 0, len);
+                    deflater.finish();
+                    // The buffer holds the deflate bound of a whole tile
+                    int clen = 0;
+                    while (!deflater.finished()) {
+                        clen += deflater.deflate(compressed, clen, compressed.length - clen);
+                    }
+                    out.writeInt(tileRects[i * 4]);
+                    out.writeInt(tileRects[i * 4 + 1]);
+                    out.writeInt(w);
+                    out.writeInt(h);
+                    out.writeInt(clen);
+                    out.write(compressed, 0, clen);
+                }
+                out.flush();
+            }
+        } catch (InterruptedException | SocketException e) {
+            // Client disconnected or server closed
+        } catch (IOException e) {
+            if (!closed) {
+                e.printStackTrace();
+            }
+        } finally {
+            deflater.end();
+            synchronized (frameLock) {
+                if (client == socket) {
+                    closeClient();
+                }
+            }
+        }
+    }
+
+    private void receiveInput(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            while (true) {
+                byte type = in.readByte();
+                switch (type) {
+                    case FrameStreamProtocol.MOUSE_EVENT: {
+                        int id = in.readInt();
+                        int x = in.readInt();
+                        int y = in.readInt();
+                        int modifiers = in.readInt();
+                        int button = in.readInt();
+                        int clickCount = in.readInt();
+                        boolean popupTrigger = in.readBoolean();
+                        double wheelRotation = in.readDouble();
+                        checkMouseEvent(id, button, clickCount);
+                        postMouseEvent(id, x, y, modifiers, button, clickCount, popupTrigger,
+                                       wheelRotation);
+                        break;
+                    }
+                    case FrameStreamProtocol.KEY_EVENT: {
+                        int id = in.readInt();
+                        int keyCode = in.readInt();
+                        char keyChar = in.readChar();
+                        int modifiers = in.readInt();
+                        int keyLocation = in.readInt();
+                        checkKeyEvent(id, keyCode, keyChar, keyLocation);
+                        postKeyEvent(id, keyCode, keyChar, modifiers, keyLocation);
+                        break;
+                    }
+                    default:
+                        throw new IOException("Unknown input message type: " + type);
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // Client disconnected or server closed
+        } catch (IOException e) {
+            if (!closed) {
+                e.printStackTrace();
+            }
+        } finally {
+            // Also drops a client that sent an invalid message
+            synchronized (frameLock) {
+                if (client == socket) {
+                    closeClient();
+                    frameLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    // Rejects values the AWT event constructors would throw for on the EDT
+    private static void checkMouseEvent(int id, int button, int clickCount) throws IOException {
+        if (id < MouseEvent.MOUSE_FIRST || id > MouseEvent.MOUSE_LAST) {
+            throw new IOException("Invalid mouse event id: " + id);
+        }
+        if (button < MouseEvent.NOBUTTON || button > MouseEvent.BUTTON3) {
+            throw new IOException("Invalid mouse button: " + button);
+        }
+        if (clickCount < 0) {
+            throw new IOException("Invalid click count: " + clickCount);
+        }
+    }
+
+    private static void checkKeyEvent(int id, int keyCode, char keyChar, int keyLocation)
+            throws IOException
+    {
+        switch (id) {
+            case KeyEvent.KEY_PRESSED:
+            case KeyEvent.KEY_RELEASED:
+                if (keyLocation < KeyEvent.KEY_LOCATION_UNKNOWN
+                        || keyLocation > KeyEvent.KEY_LOCATION_NUMPAD)
+                {
+                    throw new IOException("Invalid key location: " + keyLocation);
+                }
+                break;
+            case KeyEvent.KEY_TYPED:
+                if (keyCode != KeyEvent.VK_UNDEFINED || keyChar == KeyEvent.CHAR_UNDEFINED
+                        || keyLocation != KeyEvent.KEY_LOCATION_UNKNOWN)
+                {
+                    throw new IOException("Invalid key typed event: code " + keyCode
+                                          + ", char " + (int) keyChar
+                                          + ", location " + keyLocation);
+                }
+                break;
+            default:
+                throw new IOException("Invalid key event id: " + id);
+        }
+    }
+
+    // x and y are in physical pixels of the streamed frame
+    private void postMouseEvent(int id, int px, int py, int modifiers, int button,
+                                int clickCount, boolean popupTrigger, double wheelRotation)
+    {
+        int scale;
+        synchronized (frameLock) {
+            scale = frameScale;
+        }
+        int x = Math.floorDiv(px, scale);
+        int y = Math.floorDiv(py, scale);
+        SwingUtilities.invokeLater(() -> {
+            long when = System.currentTimeMillis();
+            Point origin = panel.isShowing() ? panel.getLocationOnScreen() : new Point();
+            int xAbs = origin.x + x;
+            int yAbs = origin.y + y;
+            MouseEvent e;
+            if (id == MouseEvent.MOUSE_WHEEL) {
+                e = new MouseWheelEvent(panel, id, when, modifiers, x, y, xAbs, yAbs,
+                        clickCount, popupTrigger, MouseWheelEvent.WHEEL_UNIT_SCROLL, 1,
+                        (int) wheelRotation, wheelRotation);
+            } else {
+                e = new MouseEvent(panel, id, when, modifiers, x, y, xAbs, yAbs,
+                        clickCount, popupTrigger, button);
+            }
+            panel.sendMouseEventToFX(e);
+        });
+    }
+
+    private void postKeyEvent(int id, int keyCode, char keyChar, int modifiers, int keyLocation) {
+        SwingUtilities.invokeLater(() -> {
+            KeyEvent e = new KeyEvent(panel, id, System.currentTimeMillis(), modifiers,
+                                      keyCode, keyChar, keyLocation);
+            panel.sendKeyEventToFX(e);
+        });
+    }
+}
@@ -0,0 +1,289 @@
+package javafx.embed.swing.modified;
+
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Records the input a {@link SynchronizedJFXPanel} forwards to its scene,
+ * i.e. mouse, wheel, key and input method events and resizes, into a
+ * compact binary log, to be played back with {@link InputEventReplayer}.
+ * <p>
+ * Events are recorded where the panel forwards them, before any filtering,
+ * so a replay goes through exactly the same code. The log starts with the
+ * magic number {@code "JFXI"} and a version, both as {@code int}s, followed
+ * by one record per event. Every record starts with its type as a
+ * {@code byte} and the time since the previous record in microseconds.
+ * Integers are written as variable-length quantities of 7 bits per byte,
+ * signed ones zigzag-encoded, so most records take less than 12 bytes:
+ * <pre>
+ *     MOUSE:        id, x, y, modifiersEx, button, clickCount,
+ *                   boolean popupTrigger, and for MOUSE_WHEEL events
+ *                   scrollType, scrollAmount, wheelRotation,
+ *                   double preciseWheelRotation
+ *     KEY:          id, keyCode, keyChar, modifiersEx, keyLocation
+ *     INPUT_METHOD: UTF text, committedCharacterCount, caret
+ *     RESIZE:       width, height
+ * </pre>
+ * <p>
+ * Records are encoded on the event dispatch thread into an in-memory
+ * buffer. Full buffers are handed to a background writer thread, so a slow
+ * stream never delays input dispatch; buffers wait in memory for as long
+ * as the stream lags behind. If writing fails, recording stops and the
+ * failure is available from {@link #getError()}. A recorder is attached
+ * with {@link SynchronizedJFXPanel#setInputEventRecorder(InputEventRecorder)},
+ * and must be {@linkplain #close() closed} once recording is done.
+ */
+public final class InputEventRecorder implements AutoCloseable {
+
+    static final int MAGIC = 0x4a465849; // "JFXI"
+    static final int VERSION = 1;
+
+    static final byte MOUSE = 1;
+    static final byte KEY = 2;
+    static final byte INPUT_METHOD = 3;
+    static final byte RESIZE = 4;
+
+    // Encoded records are handed to the writer in chunks of about this size
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // Queued by close() to stop the writer thread
+    private static final byte END_OF_STREAM[] = new byte[0];
+
+    private final OutputStream stream;
+    private final BlockingQueue<byte[]> pendingChunks = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile IOException error;
+
+    // Guarded by this
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(CHUNK_SIZE + 256);
+    private final DataOutputStream out = new DataOutputStream(buffer);
+    private long lastNanos;
+    private long eventCount = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a recorder writing to the specified stream, and starts its
+     * writer thread.
+     *
+     * @param out the stream the log is written to; it is closed when the
+     *        recorder is closed
+     * @throws IOException if the header cannot be written
+     */
+    public InputEventRecorder(OutputStream out) throws IOException {
+        this.stream = out;
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+        lastNanos = System.nanoTime();
+        writer = new Thread(this::writeChunks, "SynchronizedJFXPanel input recorder");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns the number of events recorded so far.
+     *
+     * @return the number of events
+     */
+    public synchronized long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Returns the error that stopped recording.
+     *
+     * @return the error, or null if writing has not failed
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * Writes the remaining records and closes the stream. Records of
+     * events recorded before this call are written before this method
+     * returns.
+     *
+     * @throws IOException if the stream cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            handOff();
+            pendingChunks.add(END_OF_STREAM);
+        }
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    synchronized void recordMouseEvent(MouseEvent e) {
+        if (!startRecord(MOUSE)) {
+            return;
+        }
+        try {
+            writeVarInt(out, e.getID());
+            writeSignedVarInt(out, e.getX());
+            writeSignedVarInt(out, e.getY());
+            writeVarInt(out, e.getModifiersEx());
+            writeVarInt(out, e.getButton());
+            writeVarInt(out, e.getClickCount());
+            out.writeBoolean(e.isPopupTrigger());
+            if (e instanceof MouseWheelEvent) {
+                MouseWheelEvent we = (MouseWheelEvent) e;
+                writeVarInt(out, we.getScrollType());
+                writeVarInt(out, we.getScrollAmount());
+                writeSignedVarInt(out, we.getWheelRotation());
+                out.writeDouble(we.getPreciseWheelRotation());
+            }
+        } catch (IOException ex) {
+            fail(ex);
+        }
+        endRecord();
+    }
+
+    synchronized void recordKeyEvent(KeyEvent e) {
+        if (!startRecord(KEY)) {
+            return;
+        }
+        try {
+            writeVarInt(out, e.getID());
+            writeVarInt(out, e.getKeyCode());
+            writeVarInt(out, e.getKeyChar());
+            writeVarInt(out, e.getModifiersEx());
+            writeVarInt(out, e.getKeyLocation());
+        } catch (IOException ex) {
+            fail(ex);
+        }
+        endRecord();
+    }
+
+    synchronized void recordInputMethodEvent(String text, int committed, int caret) {
+        if (!startRecord(INPUT_METHOD)) {
+            return;
+        }
+        try {
+            out.writeUTF(text);
+            writeVarInt(out, committed);
+            writeSignedVarInt(out, caret);
+        } catch (IOException ex) {
+            fail(ex);
+        }
+        endRecord();
+    }
+
+    synchronized void recordResize(int width, int height) {
+        if (!startRecord(RESIZE)) {
+            return;
+        }
+        try {
+            writeVarInt(out, width);
+            writeVarInt(out, height);
+        } catch (IOException ex) {
+            fail(ex);
+        }
+        endRecord();
+    }
+
+    // Writes the type and time of a record, returns false if recording
+    // has stopped
+    private boolean startRecord(byte type) {
+        if (closed || (error != null)) {
+            return false;
+        }
+        long now = System.nanoTime();
+        try {
+            out.writeByte(type);
+            writeVarLong(out, (now - lastNanos) / 1000);
+        } catch (IOException ex) {
+            fail(ex);
+            return false;
+        }
+        lastNanos = now;
+        eventCount++;
+        return true;
+    }
+
+    // Hands the buffer to the writer thread once it is full
+    private void endRecord() {
+        if (buffer.size() >= CHUNK_SIZE) {
+            handOff();
+        }
+    }
+
+    private void handOff() {
+        if (buffer.size() > 0) {
+            pendingChunks.add(buffer.toByteArray());
+            buffer.reset();
+        }
+    }
+
+    private void fail(IOException ex) {
+        error = ex;
+    }
+
+    private void writeChunks() {
+        try {
+            while (true) {
+                byte chunk[];
+                try {
+                    chunk = pendingChunks.take();
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if (chunk == END_OF_STREAM) {
+                    break;
+                }
+                stream.write(chunk);
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            // Record it, so that recording stops
+            error = new IOException("Input writer failed", e);
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value & 0xffffffffL);
+    }
+
+    static void writeSignedVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,281 @@
+package javafx.embed.swing.modified;
+
+import java.awt.Point;
+import java.awt.event.InputMethodEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.font.TextHitInfo;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.text.AttributedString;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+/**
+ * Plays back a log written by an {@link InputEventRecorder} against a
+ * {@link SynchronizedJFXPanel}, e.g. to reproduce the lag of a production
+ * session or to compare the performance of two versions of a scene.
+ * <p>
+ * Every event is rebuilt and dispatched on the event dispatch thread
+ * through the same forwarding path it was recorded at, one event at a
+ * time, so a replay is deterministic as far as the scene is. Events are
+ * replayed with their recorded timing, scaled by a speed factor, or as
+ * fast as the event dispatch thread accepts them. The panel does not need
+ * to be showing, so replays also work in headless test environments.
+ * <p>
+ * If dispatching an event fails, e.g. because the scene throws an
+ * exception, the replay stops and the exception is rethrown, as the rest
+ * of the log would no longer be replayed faithfully.
+ * <p>
+ * Unless the panel already has a {@link LatencyProbe}, a new one is
+ * attached for the duration of the replay, so the latencies of the
+ * replayed events are available from {@link #getLatencyProbe()}
+ * afterwards.
+ */
+public final class InputEventReplayer {
+
+    private final SynchronizedJFXPanel panel;
+
+    private long eventCount = 0;
+    private long elapsedNanos = 0;
+    private LatencyProbe probe;
+
+    /**
+     * Creates a replayer for the specified panel.
+     *
+     * @param panel the panel to replay events against
+     */
+    public InputEventReplayer(SynchronizedJFXPanel panel) {
+        this.panel = panel;
+    }
+
+    /**
+     * Replays the log read from the specified stream. This method blocks
+     * until all events were dispatched, and must not be called on the
+     * event dispatch thread.
+     *
+     * @param in the stream to read the log from; it is not closed
+     * @param speed the factor the recorded time between events is divided
+     *        by, e.g. 2 to replay at twice the recorded speed, or 0 to
+     *        replay as fast as possible
+     * @throws IOException if the log cannot be read or is not valid, or if
+     *         the calling thread is interrupted
+     * @throws IllegalArgumentException if {@code speed} is negative
+     * @throws IllegalStateException if called on the event dispatch thread
+     * @throws RuntimeException the exception thrown while dispatching an
+     *         event, which ends the replay
+     */
+    public void replay(InputStream in, double speed) throws IOException {
+        if (!(speed >= 0)) {
+            throw new IllegalArgumentException("Invalid speed: " + speed);
+        }
+        if (SwingUtilities.isEventDispatchThread()) {
+            throw new IllegalStateException("Cannot replay on the event dispatch thread");
+        }
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != InputEventRecorder.MAGIC) {
+            throw new IOException("Not an input event log");
+        }
+        int version = data.readInt();
+        if (version != InputEventRecorder.VERSION) {
+            throw new IOException("Unsupported input event log version: " + version);
+        }
+
+        LatencyProbe attached = null;
+        probe = panel.getLatencyProbe();
+        if (probe == null) {
+            probe = attached = new LatencyProbe();
+            panel.setLatencyProbe(probe);
+        }
+        eventCount = 0;
+        long start = System.nanoTime();
+        long due = start;
+        try {
+            while (true) {
+                int type = data.read();
+                if (type < 0) {
+                    break;
+                }
+                long deltaMicros = readVarLong(data);
+                Runnable event = readEvent(data, (byte) type);
+                if (speed > 0) {
+                    due += (long) (TimeUnit.MICROSECONDS.toNanos(deltaMicros) / speed);
+                    sleepUntil(due);
+                }
+                dispatch(event);
+                eventCount++;
+            }
+        } finally {
+            elapsedNanos = System.nanoTime() - start;
+            if (attached != null) {
+                // Frames of the last events may still be painted
+                SwingUtilities.invokeLater(() -> {
+                    if (panel.getLatencyProbe() == attached) {
+                        panel.setLatencyProbe(null);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Returns the number of events dispatched by the last replay.
+     *
+     * @return the number of events
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Returns the time the last replay took.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    public long getElapsedTime() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the number of events dispatched per second by the last
+     * replay. With a speed of 0, this is the throughput of the input path
+     * of the panel.
+     *
+     * @return the events per second
+     */
+    public double getThroughput() {
+        return (elapsedNanos == 0) ? 0 : eventCount * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns the probe that measured the latencies of the last replay.
+     *
+     * @return the latency probe, or null before the first replay
+     */
+    public LatencyProbe getLatencyProbe() {
+        return probe;
+    }
+
+    // Reads the fields of a record and returns the action that replays it
+    private Runnable readEvent(DataInputStream in, byte type) throws IOException {
+        switch (type) {
+            case InputEventRecorder.MOUSE: {
+                int id = readVarInt(in);
+                int x = readSignedVarInt(in);
+                int y = readSignedVarInt(in);
+                int modifiers = readVarInt(in);
+                int button = readVarInt(in);
+                int clickCount = readVarInt(in);
+                boolean popupTrigger = in.readBoolean();
+                if (id == MouseEvent.MOUSE_WHEEL) {
+                    int scrollType = readVarInt(in);
+                    int scrollAmount = readVarInt(in);
+                    int rotation = readSignedVarInt(in);
+                    double preciseRotation = in.readDouble();
+                    return () -> {
+                        Point p = toScreen(x, y);
+                        panel.sendMouseEventToFX(new MouseWheelEvent(
+                                panel, id, System.currentTimeMillis(), modifiers, x, y,
+                                p.x, p.y, clickCount, popupTrigger, scrollType, scrollAmount,
+                                rotation, preciseRotation));
+                    };
+                }
+                return () -> {
+                    Point p = toScreen(x, y);
+                    panel.sendMouseEventToFX(new MouseEvent(
+                            panel, id, System.currentTimeMillis(), modifiers, x, y,
+                            p.x, p.y, clickCount, popupTrigger, button));
+                };
+            }
+            case InputEventRecorder.KEY: {
+                int id = readVarInt(in);
+                int keyCode = readVarInt(in);
+                char keyChar = (char) readVarInt(in);
+                int modifiers = readVarInt(in);
+                int keyLocation = readVarInt(in);
+                return () -> panel.sendKeyEventToFX(new KeyEvent(
+                        panel, id, System.currentTimeMillis(), modifiers,
+                        keyCode, keyChar, keyLocation));
+            }
+            case InputEventRecorder.INPUT_METHOD: {
+                String text = in.readUTF();
+                int committed = readVarInt(in);
+                int caret = readSignedVarInt(in);
+                return () -> panel.sendInputMethodEventToFX(new InputMethodEvent(
+                        panel, InputMethodEvent.INPUT_METHOD_TEXT_CHANGED,
+                        new AttributedString(text).getIterator(), committed,
+                        (caret >= 0) ? TextHitInfo.leading(caret) : null, null));
+            }
+            case InputEventRecorder.RESIZE: {
+                int width = readVarInt(in);
+                int height = readVarInt(in);
+                return () -> panel.replayResize(width, height);
+            }
+            default:
+                throw new IOException("Unknown input event record type: " + type);
+        }
+    }
+
+    // Called on EDT
+    private Point toScreen(int x, int y) {
+        Point p = panel.isShowing() ? panel.getLocationOnScreen() : new Point();
+        p.translate(x, y);
+        return p;
+    }
+
+    private static void dispatch(Runnable event) throws IOException {
+        try {
+            SwingUtilities.invokeAndWait(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while replaying");
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Replaying an event failed", cause);
+        }
+    }
+
+    private static void sleepUntil(long due) throws IOException {
+        long delay;
+        while ((delay = due - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while replaying");
+            }
+        }
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    static int readSignedVarInt(DataInputStream in) throws IOException {
+        int value = readVarInt(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+}
@@ -0,0 +1,150 @@
+package javafx.embed.swing.modified;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.EventQueue;
+import java.awt.event.InputMethodEvent;
+import java.awt.event.InvocationEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import sun.awt.AppContext;
+import sun.awt.SunToolkit;
+
+/**
+ * Runs the low-priority work a {@link SynchronizedJFXPanel} receives from
+ * the JavaFX side, i.e. frame fetches and cursor updates, on the event
+ * dispatch thread of the panel without delaying user input.
+ * <p>
+ * Tasks are collected in a queue that is drained by a single invocation
+ * event. If, when that event is dispatched, input events such as key
+ * presses, button presses, drags or wheel rotations are waiting in the
+ * event queue, the event is posted again behind them, so the input is
+ * forwarded to the scene before the panel spends time on pixels that are
+ * about to become stale. Mouse moves do not defer anything, as hover
+ * feedback itself needs frames.
+ * <p>
+ * To keep continuous input, e.g. a long drag, from starving the panel,
+ * tasks are deferred for at most {@link #MAX_DEFERRAL_MILLIS}
+ * milliseconds; after that they run even if input is pending.
+ */
+final class InputPriorityDispatcher {
+
+    static final long MAX_DEFERRAL_MILLIS = 50;
+    private static final long MAX_DEFERRAL_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(MAX_DEFERRAL_MILLIS);
+
+    // Input that low-priority work gives way to
+    private static final int INPUT_IDS[] = {
+        KeyEvent.KEY_PRESSED, KeyEvent.KEY_RELEASED, KeyEvent.KEY_TYPED,
+        MouseEvent.MOUSE_PRESSED, MouseEvent.MOUSE_RELEASED,
+        MouseEvent.MOUSE_DRAGGED, MouseEvent.MOUSE_WHEEL,
+        InputMethodEvent.INPUT_METHOD_TEXT_CHANGED
+    };
+
+    private final Component target;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Set while a drain event is waiting for or running on the EDT
+    private final AtomicBoolean drainPosted = new AtomicBoolean();
+
+    private volatile boolean enabled = true;
+    // Accessed on EDT only. 0: the tasks have not been deferred.
+    private long deferredSince = 0;
+    // Written on EDT only
+    private volatile long deferrals = 0;
+    private volatile long starvations = 0;
+
+    InputPriorityDispatcher(Component target) {
+        this.target = target;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /*
+     * Returns the number of times the tasks were posted again because
+     * input was pending.
+     */
+    long getDeferralCount() {
+        return deferrals;
+    }
+
+    /*
+     * Returns the number of times the tasks ran while input was pending
+     * because they had been deferred for too long.
+     */
+    long getStarvationCount() {
+        return starvations;
+    }
+
+    /*
+     * Called on any thread. Runs the task on the EDT of the target, after
+     * the input that is pending at that time.
+     */
+    void post(Runnable r) {
+        tasks.add(r);
+        if (drainPosted.compareAndSet(false, true)) {
+            postDrain();
+        }
+    }
+
+    private void postDrain() {
+        AppContext context = SunToolkit.targetToAppContext(target);
+        if (context == null) {
+            drainPosted.set(false);
+            return;
+        }
+        SunToolkit.postEvent(context, new InvocationEvent(target, this::drain));
+    }
+
+    // Called on EDT
+    private void drain() {
+        if (enabled && isInputPending()) {
+            long now = System.nanoTime();
+            if (deferredSince == 0) {
+                deferredSince = now;
+            }
+            if (now - deferredSince < MAX_DEFERRAL_NANOS) {
+                deferrals++;
+                postDrain();
+                return;
+            }
+            starvations++;
+        }
+        deferredSince = 0;
+        // Tasks posted from now on need another drain event
+        drainPosted.set(false);
+        Runnable r;
+        while ((r = tasks.poll()) != null) {
+            try {
+                r.run();
+            } catch (Throwable th) {
+                th.printStackTrace();
+            }
+        }
+    }
+
+    // Called on EDT
+    private boolean isInputPending() {
+        AppContext context = SunToolkit.targetToAppContext(target);
+        if (context == null) {
+            return false;
+        }
+        EventQueue queue = SunToolkit.getSystemEventQueueImplPP(context);
+        for (int id : INPUT_IDS) {
+            AWTEvent e = queue.peekEvent(id);
+            if (e != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,150 @@
+package javafx.embed.swing.modified;
+
+/**
+ * A histogram of latencies measured by a {@link LatencyProbe}.
+ * <p>
+ * Latencies are counted in buckets of exponentially growing width: bucket
+ * 0 holds latencies below 2 microseconds, and bucket {@code i} holds
+ * latencies from 2<sup>i</sup> up to 2<sup>i+1</sup> microseconds. The
+ * minimum, maximum and mean are exact; percentiles are accurate to the
+ * width of a bucket.
+ * <p>
+ * The histograms returned by {@link LatencyProbe} are snapshots and do not
+ * change afterwards.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * The number of buckets. The last bucket also holds all latencies
+     * longer than its lower bound.
+     */
+    public static final int BUCKET_COUNT = 32;
+
+    private final long buckets[];
+    private long count = 0;
+    private long totalNanos = 0;
+    private long minNanos = Long.MAX_VALUE;
+    private long maxNanos = 0;
+
+    LatencyHistogram() {
+        buckets = new long[BUCKET_COUNT];
+    }
+
+    LatencyHistogram(LatencyHistogram h) {
+        buckets = h.buckets.clone();
+        count = h.count;
+        totalNanos = h.totalNanos;
+        minNanos = h.minNanos;
+        maxNanos = h.maxNanos;
+    }
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        long micros = nanos / 1000;
+        int bucket = (micros < 2) ? 0 : 63 - Long.numberOfLeadingZeros(micros);
+        buckets[Math.min(bucket, BUCKET_COUNT - 1)]++;
+        count++;
+        totalNanos += nanos;
+        minNanos = Math.min(minNanos, nanos);
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    /**
+     * Returns the number of latencies recorded.
+     *
+     * @return the number of samples
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the shortest latency recorded.
+     *
+     * @return the minimum latency in nanoseconds, or 0 if there are no
+     *         samples
+     */
+    public long getMin() {
+        return (count == 0) ? 0 : minNanos;
+    }
+
+    /**
+     * Returns the longest latency recorded.
+     *
+     * @return the maximum latency in nanoseconds
+     */
+    public long getMax() {
+        return maxNanos;
+    }
+
+    /**
+     * Returns the mean of the latencies recorded.
+     *
+     * @return the mean latency in nanoseconds, or 0 if there are no
+     *         samples
+     */
+    public long getMean() {
+        return (count == 0) ? 0 : totalNanos / count;
+    }
+
+    /**
+     * Returns the number of latencies in the specified bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the number of samples in the bucket
+     * @throws IndexOutOfBoundsException if {@code bucket} is negative or
+     *         not less than {@link #BUCKET_COUNT}
+     */
+    public long getBucketCount(int bucket) {
+        return buckets[bucket];
+    }
+
+    /**
+     * Returns the lower bound of the specified bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the shortest latency counted in the bucket, in nanoseconds
+     */
+    public static long getBucketLowerBound(int bucket) {
+        return (bucket == 0) ? 0 : (1L << bucket) * 1000;
+    }
+
+    /**
+     * Returns an estimate of the specified percentile: the upper bound of
+     * the bucket that contains it, capped at the maximum latency.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in nanoseconds below which the specified
+     *         percentage of samples lies, or 0 if there are no samples
+     * @throws IllegalArgumentException if {@code percentile} is not
+     *         between 0 and 100
+     */
+    public long getPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Invalid percentile: " + percentile);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            seen += buckets[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(getBucketLowerBound(i + 1), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d, min %.3f ms, mean %.3f ms, p50 %.3f ms, p95 %.3f ms, "
+                             + "p99 %.3f ms, max %.3f ms",
+                             count, getMin() / 1e6, getMean() / 1e6,
+                             getPercentile(50) / 1e6, getPercentile(95) / 1e6,
+                             getPercentile(99) / 1e6, maxNanos / 1e6);
+    }
+}
@@ -0,0 +1,240 @@
+package javafx.embed.swing.modified;
+
+import java.awt.event.InputMethodEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Measures how long input events take from arriving at a
+ * {@link SynchronizedJFXPanel} until a frame rendered in response to them is
+ * painted on screen.
+ * <p>
+ * Once attached with {@link SynchronizedJFXPanel#setLatencyProbe}, the probe
+ * follows every input event through the following stages, each ending one
+ * stage and starting the next:
+ * <ol>
+ * <li>the event enters {@code processMouseEvent}, {@code processKeyEvent}
+ *     or a related method of the panel;
+ * <li>the event has been delivered to the embedded scene
+ *     ({@link Stage#DELIVERY});
+ * <li>the scene has rendered its next frame, i.e. the next JavaFX pulse
+ *     has completed ({@link Stage#RENDER});
+ * <li>that frame has been blitted by {@code paintComponent}
+ *     ({@link Stage#PAINT}).
+ * </ol>
+ * The latency of each stage and the total latency ({@link Stage#TOTAL})
+ * are recorded in a {@link LatencyHistogram} per AWT event ID, e.g.
+ * {@link MouseEvent#MOUSE_PRESSED}. An event that does not change the scene
+ * still completes with the next frame painted, so idle scenes report long
+ * latencies for such events.
+ * <p>
+ * While the panel is not showing, its frames are never painted, so events
+ * complete when the frame is fetched and their {@link Stage#PAINT} stage
+ * ends there. This allows automated tests to measure latencies headlessly, by
+ * replaying a recorded session with an {@link InputEventReplayer} against
+ * a panel that is not shown and checking the percentiles of
+ * {@link InputEventReplayer#getLatencyProbe()} afterwards.
+ * <p>
+ * At most {@link #MAX_PENDING} events are tracked at a time; when more
+ * events wait for a frame, the oldest are dropped. The probe can be read
+ * on any thread.
+ */
+public final class LatencyProbe {
+
+    /**
+     * The stages of the path of an input event.
+     */
+    public enum Stage {
+        /** From entering the panel to being delivered to the scene. */
+        DELIVERY,
+        /** From being delivered to the end of the next rendered frame. */
+        RENDER,
+        /** From the end of rendering to the frame being painted. */
+        PAINT,
+        /** From entering the panel to the frame being painted. */
+        TOTAL
+    }
+
+    /**
+     * The maximum number of events waiting for a frame.
+     */
+    public static final int MAX_PENDING = 256;
+
+    private static final class Sample {
+        final int id;
+        final long entryNanos;
+        final long deliveredNanos;
+        // The latest frame sequence number at delivery
+        final long sequence;
+        long renderedNanos = 0;
+
+        Sample(int id, long entryNanos, long deliveredNanos, long sequence) {
+            this.id = id;
+            this.entryNanos = entryNanos;
+            this.deliveredNanos = deliveredNanos;
+            this.sequence = sequence;
+        }
+    }
+
+    // Guarded by this. Ordered by sequence, as events are delivered on EDT.
+    private final ArrayDeque<Sample> pending = new ArrayDeque<>();
+    private final Map<Integer, LatencyHistogram[]> histograms = new TreeMap<>();
+    private long dropped = 0;
+
+    /**
+     * Creates a probe. It measures nothing until it is attached to a panel.
+     */
+    public LatencyProbe() {
+    }
+
+    /*
+     * Called on EDT after an event was delivered to the scene. 'sequence'
+     * is the sequence number of the latest frame at that time.
+     */
+    synchronized void eventDelivered(int id, long entryNanos, long sequence) {
+        if (pending.size() == MAX_PENDING) {
+            pending.removeFirst();
+            dropped++;
+        }
+        pending.addLast(new Sample(id, entryNanos, System.nanoTime(), sequence));
+    }
+
+    /*
+     * Called on the thread rendering the scene when it has rendered the
+     * frame with the specified sequence number.
+     */
+    synchronized void frameRendered(long sequence) {
+        long now = System.nanoTime();
+        for (Sample s : pending) {
+            if (s.sequence >= sequence) {
+                break;
+            }
+            if (s.renderedNanos == 0) {
+                s.renderedNanos = now;
+            }
+        }
+    }
+
+    /*
+     * Called on EDT when the frame with the specified sequence number has
+     * been painted. Completes all events delivered before that frame.
+     */
+    synchronized void framePainted(long sequence) {
+        long now = System.nanoTime();
+        Sample s;
+        while (((s = pending.peekFirst()) != null) && (s.sequence < sequence)) {
+            pending.removeFirst();
+            long rendered = (s.renderedNanos != 0) ? s.renderedNanos : now;
+            LatencyHistogram h[] = histograms.get(s.id);
+            if (h == null) {
+                h = new LatencyHistogram[Stage.values().length];
+                for (int i = 0; i < h.length; i++) {
+                    h[i] = new LatencyHistogram();
+                }
+                histograms.put(s.id, h);
+            }
+            h[Stage.DELIVERY.ordinal()].record(s.deliveredNanos - s.entryNanos);
+            h[Stage.RENDER.ordinal()].record(rendered - s.deliveredNanos);
+            h[Stage.PAINT.ordinal()].record(now - rendered);
+            h[Stage.TOTAL.ordinal()].record(now - s.entryNanos);
+        }
+    }
+
+    /**
+     * Returns the IDs of the AWT events measured so far, in ascending order.
+     *
+     * @return the event IDs
+     */
+    public synchronized int[] getEventIds() {
+        int ids[] = new int[histograms.size()];
+        int i = 0;
+        for (Integer id : histograms.keySet()) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the total latencies of the events with the specified ID.
+     *
+     * @param eventId the AWT event ID, e.g. {@link KeyEvent#KEY_PRESSED}
+     * @return a snapshot of the histogram, empty if no such event was
+     *         measured
+     */
+    public LatencyHistogram getHistogram(int eventId) {
+        return getHistogram(eventId, Stage.TOTAL);
+    }
+
+    /**
+     * Returns the latencies of a stage for the events with the specified
+     * ID.
+     *
+     * @param eventId the AWT event ID, e.g. {@link KeyEvent#KEY_PRESSED}
+     * @param stage the stage
+     * @return a snapshot of the histogram, empty if no such event was
+     *         measured
+     */
+    public synchronized LatencyHistogram getHistogram(int eventId, Stage stage) {
+        LatencyHistogram h[] = histograms.get(eventId);
+        return (h == null) ? new LatencyHistogram() : new LatencyHistogram(h[stage.ordinal()]);
+    }
+
+    /**
+     * Returns the number of events that were not measured because too many
+     * events were waiting for a frame.
+     *
+     * @return the number of dropped events
+     */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Discards all measurements, including events still waiting for a
+     * frame.
+     */
+    public synchronized void reset() {
+        pending.clear();
+        histograms.clear();
+        dropped = 0;
+    }
+
+    /**
+     * Returns a report of the total latencies of all events measured, one
+     * line per event type.
+     *
+     * @return the report
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, LatencyHistogram[]> e : histograms.entrySet()) {
+            sb.append(getEventName(e.getKey())).append(": ")
+              .append(e.getValue()[Stage.TOTAL.ordinal()]).append('\n');
+        }
+        if (dropped > 0) {
+            sb.append(dropped).append(" events dropped\n");
+        }
+        return sb.toString();
+    }
+
+    private static String getEventName(int id) {
+        switch (id) {
+            case MouseEvent.MOUSE_PRESSED: return "MOUSE_PRESSED";
+            case MouseEvent.MOUSE_RELEASED: return "MOUSE_RELEASED";
+            case MouseEvent.MOUSE_MOVED: return "MOUSE_MOVED";
+            case MouseEvent.MOUSE_DRAGGED: return "MOUSE_DRAGGED";
+            case MouseEvent.MOUSE_ENTERED: return "MOUSE_ENTERED";
+            case MouseEvent.MOUSE_EXITED: return "MOUSE_EXITED";
+            case MouseEvent.MOUSE_WHEEL: return "MOUSE_WHEEL";
+            case KeyEvent.KEY_PRESSED: return "KEY_PRESSED";
+            case KeyEvent.KEY_RELEASED: return "KEY_RELEASED";
+            case KeyEvent.KEY_TYPED: return "KEY_TYPED";
+            case InputMethodEvent.INPUT_METHOD_TEXT_CHANGED: return "INPUT_METHOD_TEXT_CHANGED";
+            default: return "event " + id;
+        }
+    }
+}
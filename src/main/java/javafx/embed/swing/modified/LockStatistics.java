@@ -0,0 +1,75 @@
+package javafx.embed.swing.modified;
+
+/**
+ * An immutable snapshot of the contention on one of the locks guarding the
+ * embedded scene of a {@link SynchronizedJFXPanel}.
+ *
+ * @see SynchronizedJFXPanel#getLockStatistics()
+ */
+public final class LockStatistics {
+
+    private final String name;
+    private final long acquisitions;
+    private final long contendedAcquisitions;
+    private final long waitNanos;
+
+    LockStatistics(String name, long acquisitions, long contendedAcquisitions, long waitNanos) {
+        this.name = name;
+        this.acquisitions = acquisitions;
+        this.contendedAcquisitions = contendedAcquisitions;
+        this.waitNanos = waitNanos;
+    }
+
+    /**
+     * Returns the name of the lock, e.g. {@code "paint"} or {@code "input"}.
+     *
+     * @return the lock name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns how often the lock was acquired.
+     *
+     * @return the number of acquisitions
+     */
+    public long getAcquisitions() {
+        return acquisitions;
+    }
+
+    /**
+     * Returns how often a thread had to wait for the lock because another
+     * thread held it.
+     *
+     * @return the number of contended acquisitions
+     */
+    public long getContendedAcquisitions() {
+        return contendedAcquisitions;
+    }
+
+    /**
+     * Returns the total time threads spent waiting for the lock.
+     *
+     * @return the wait time in nanoseconds
+     */
+    public long getWaitTime() {
+        return waitNanos;
+    }
+
+    /**
+     * Returns the fraction of acquisitions that had to wait.
+     *
+     * @return the contention ratio, between 0 and 1
+     */
+    public double getContentionRatio() {
+        return (acquisitions == 0) ? 0 : (double) contendedAcquisitions / acquisitions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d acquisitions, %d contended (%.1f%%), %.3f ms waiting",
+                             name, acquisitions, contendedAcquisitions,
+                             getContentionRatio() * 100, waitNanos / 1e6);
+    }
+}
@@ -0,0 +1,426 @@
+package javafx.embed.swing.modified;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.nio.IntBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import sun.awt.image.IntegerComponentRaster;
+import com.sun.javafx.application.PlatformImpl;
+import com.sun.javafx.cursor.CursorFrame;
+import com.sun.javafx.embed.EmbeddedSceneInterface;
+import com.sun.javafx.embed.EmbeddedStageInterface;
+import com.sun.javafx.embed.HostInterface;
+import com.sun.javafx.stage.EmbeddedWindow;
+import com.sun.javafx.tk.RenderJob;
+import com.sun.javafx.tk.TKPulseListener;
+import com.sun.javafx.tk.Toolkit;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+/**
+ * Renders a JavaFX {@link Scene} without any Swing component or visible
+ * window, e.g. to produce chart images for reports on a batch server.
+ * <p>
+ * The scene is hosted by an {@link EmbeddedWindow} exactly like in a
+ * {@link SynchronizedJFXPanel}, but frames are only fetched when
+ * {@link #render(BufferedImage, long)} is called, on the calling thread.
+ * Each renderer has its own stage and back buffer, so several renderers can
+ * be used from several threads in parallel; only the JavaFX pulse that
+ * lays out and renders the scenes is shared.
+ * <p>
+ * A typical use modifies the scene, on the JavaFX application thread or
+ * before it is attached, and then calls {@code render} from a worker
+ * thread, which waits for the frame reflecting the modification.
+ * Renderers must be {@linkplain #close() closed} to release the stage.
+ */
+public final class OffscreenFXRenderer implements AutoCloseable {
+
+    private final HostContainer hostContainer = new HostContainer();
+
+    // Accessed on FX thread only
+    private EmbeddedWindow stage;
+
+    // Never held while fetching a frame: scenePeer.getPixels takes the
+    // Quantum render lock, which the render thread already holds when it
+    // calls HostContainer.repaint (see 8089371)
+    private final Object scenePeerLock = new Object();
+    // Guarded by scenePeerLock
+    private EmbeddedStageInterface stagePeer;
+    private EmbeddedSceneInterface scenePeer;
+    private int width;
+    private int height;
+    private int scaleFactor;
+
+    // Incremented by the render thread without taking any lock
+    private final AtomicLong frameCount = new AtomicLong();
+    // Signals new frames. Held only while waiting, never around getPixels.
+    private final Object frameMonitor = new Object();
+    // Guarded by frameMonitor
+    private long renderedFrameCount = 0;
+
+    // Serializes render calls
+    private final Object renderLock = new Object();
+    // Guarded by renderLock
+    private FrameBuffer pixelsBuf;
+
+    private volatile Scene scene;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a new renderer with the specified logical size. The JavaFX
+     * runtime is started if needed.
+     *
+     * @param width the logical width of the scene
+     * @param height the logical height of the scene
+     * @param scaleFactor the number of pixels rendered per logical pixel
+     *        along each axis
+     * @throws IllegalArgumentException if a dimension or the scale factor
+     *         is not positive
+     */
+    public OffscreenFXRenderer(int width, int height, int scaleFactor) {
+        checkSize(width, height);
+        if (scaleFactor <= 0) {
+            throw new IllegalArgumentException("Invalid scale factor: " + scaleFactor);
+        }
+        this.width = width;
+        this.height = height;
+        this.scaleFactor = scaleFactor;
+        // Note that calling PlatformImpl.startup more than once is OK
+        PlatformImpl.startup(() -> {
+            // No need to do anything here
+        });
+    }
+
+    /**
+     * Returns the scene rendered by this renderer.
+     *
+     * @return the attached scene, or null
+     */
+    public Scene getScene() {
+        return scene;
+    }
+
+    /**
+     * Attaches the scene to render. This method can be called on any
+     * thread, and returns once the scene is attached.
+     *
+     * @param newScene the scene to render, or null to detach the current one
+     */
+    public void setScene(Scene newScene) {
+        runAndWaitOnFxThread(() -> setSceneImpl(newScene));
+    }
+
+    /*
+     * Called on JavaFX app thread.
+     */
+    private void setSceneImpl(Scene newScene) {
+        if ((stage != null) && (newScene == null)) {
+            stage.hide();
+            stage = null;
+        }
+        scene = newScene;
+        if (closed) {
+            return;
+        }
+        if ((stage == null) && (newScene != null)) {
+            stage = new EmbeddedWindow(hostContainer);
+        }
+        if (stage != null) {
+            stage.setScene(newScene);
+            if (!stage.isShowing()) {
+                stage.show();
+            }
+        }
+    }
+
+    /**
+     * Changes the logical size of the scene.
+     *
+     * @param width the new logical width
+     * @param height the new logical height
+     * @throws IllegalArgumentException if a dimension is not positive
+     */
+    public void setSize(int width, int height) {
+        checkSize(width, height);
+        synchronized (scenePeerLock) {
+            if (this.width == width && this.height == height) {
+                return;
+            }
+            this.width = width;
+            this.height = height;
+            if (stagePeer != null) {
+                stagePeer.setSize(width, height);
+            }
+            if (scenePeer != null) {
+                scenePeer.setSize(width, height);
+            }
+        }
+    }
+
+    /**
+     * Returns the width of the frames produced by this renderer, in pixels.
+     *
+     * @return the logical width times the scale factor
+     */
+    public int getPixelWidth() {
+        synchronized (scenePeerLock) {
+            return width * scaleFactor;
+        }
+    }
+
+    /**
+     * Returns the height of the frames produced by this renderer, in pixels.
+     *
+     * @return the logical height times the scale factor
+     */
+    public int getPixelHeight() {
+        synchronized (scenePeerLock) {
+            return height * scaleFactor;
+        }
+    }
+
+    /**
+     * Renders the current state of the scene into the specified image.
+     * <p>
+     * A pulse is requested, and the call waits up to {@code timeoutMillis}
+     * for the scene to deliver a frame newer than the one returned by the
+     * previous call. If the scene has not changed since then, the pulse
+     * produces no frame, and the previous frame is copied as soon as the
+     * pulse has been rendered.
+     * <p>
+     * If the image is a {@code TYPE_INT_ARGB} image of exactly
+     * {@linkplain #getPixelWidth() the pixel size} whose pixels are stored
+     * contiguously, i.e. not a {@linkplain BufferedImage#getSubimage
+     * subimage} of a larger image, the frame is fetched into it directly.
+     * Otherwise the frame is fetched into a buffer owned by this renderer
+     * and drawn scaled into the image.
+     *
+     * @param dst the image to render into
+     * @param timeoutMillis the maximum time to wait for a new frame
+     * @return {@code true} if a new frame was rendered, {@code false} if the
+     *         previous frame was copied or the scene has not delivered any
+     *         frame yet, in which case the image is left unchanged
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if called on the JavaFX application
+     *         thread, which would prevent the frame from being rendered, or
+     *         after the renderer is closed
+     */
+    public boolean render(BufferedImage dst, long timeoutMillis) throws InterruptedException {
+        if (Toolkit.getToolkit().isFxUserThread()) {
+            throw new IllegalStateException("render must not be called on the FX thread");
+        }
+        if (closed) {
+            throw new IllegalStateException("Renderer is closed");
+        }
+        // Any changes made to the scene via Platform.runLater before this
+        // call are applied before the pulse
+        PulseMarker marker = new PulseMarker();
+        runAndWaitOnFxThread(() -> {
+            Toolkit.getToolkit().addPostSceneTkPulseListener(marker);
+            Toolkit.getToolkit().requestNextPulse();
+        });
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (renderLock) {
+            boolean newFrame;
+            synchronized (frameMonitor) {
+                long remaining;
+                while (!closed && frameCount.get() == renderedFrameCount && !marker.rendered
+                        && (remaining = deadline - System.nanoTime()) > 0)
+                {
+                    TimeUnit.NANOSECONDS.timedWait(frameMonitor, remaining);
+                }
+                long count = frameCount.get();
+                newFrame = count != renderedFrameCount;
+                renderedFrameCount = count;
+            }
+            EmbeddedSceneInterface peer;
+            int w, h, pw, ph;
+            synchronized (scenePeerLock) {
+                peer = scenePeer;
+                w = width;
+                h = height;
+                pw = width * scaleFactor;
+                ph = height * scaleFactor;
+            }
+            if (peer == null || frameCount.get() == 0) {
+                return false;
+            }
+            // No lock but renderLock is held from here on
+            if (dst.getType() == BufferedImage.TYPE_INT_ARGB
+                    && dst.getWidth() == pw && dst.getHeight() == ph)
+            {
+                // getPixels writes whole rows from the start of the buffer
+                IntegerComponentRaster icr = (IntegerComponentRaster) dst.getRaster();
+                if (icr.getDataOffset(0) == 0 && icr.getScanlineStride() == pw) {
+                    int data[] = icr.getDataStorage();
+                    return peer.getPixels(IntBuffer.wrap(data), w, h) && newFrame;
+                }
+            }
+            if (pixelsBuf == null || pixelsBuf.getWidth() != pw || pixelsBuf.getHeight() != ph) {
+                pixelsBuf = new FrameBuffer(pw, ph, false);
+            }
+            boolean fetched = peer.getPixels(pixelsBuf.getTransferBuffer(), w, h);
+            Graphics2D g2d = dst.createGraphics();
+            try {
+                g2d.setComposite(AlphaComposite.Src);
+                pixelsBuf.draw(g2d, 0, 0, dst.getWidth(), dst.getHeight());
+            } finally {
+                g2d.dispose();
+            }
+            return fetched && newFrame;
+        }
+    }
+
+    /**
+     * Detaches the scene and releases the stage. The renderer cannot be
+     * used afterwards.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        runAndWaitOnFxThread(() -> {
+            if (stage != null) {
+                stage.hide();
+                stage = null;
+            }
+        });
+        synchronized (frameMonitor) {
+            frameMonitor.notifyAll();
+        }
+        synchronized (renderLock) {
+            pixelsBuf = null;
+        }
+    }
+
+    private static void checkSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+        }
+    }
+
+    private static void runAndWaitOnFxThread(Runnable r) {
+        if (Toolkit.getToolkit().isFxUserThread()) {
+            r.run();
+            return;
+        }
+        final CountDownLatch latch = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            try {
+                r.run();
+            } finally {
+                latch.countDown();
+            }
+        });
+        try {
+            latch.await();
+        } catch (InterruptedException z) {
+            z.printStackTrace(System.err);
+        }
+    }
+
+    // Tells render() when the work of the pulse it requested is done. The
+    // render thread runs jobs in order, so a job submitted after the pulse
+    // runs after the frame the pulse produced, if any, was delivered.
+    private class PulseMarker implements TKPulseListener {
+        // Accessed on FX thread only
+        private boolean pulsed = false;
+        // Guarded by frameMonitor
+        boolean rendered = false;
+
+        @Override
+        public void pulse() {
+            // Called during the pulse, before its render job is submitted
+            if (pulsed) {
+                return;
+            }
+            pulsed = true;
+            Platform.runLater(() -> {
+                Toolkit.getToolkit().removePostSceneTkPulseListener(this);
+                Toolkit.getToolkit().addRenderJob(new RenderJob(() -> {
+                    synchronized (frameMonitor) {
+                        rendered = true;
+                        frameMonitor.notifyAll();
+                    }
+                }));
+            });
+        }
+    }
+
+    private class HostContainer implements HostInterface {
+
+        @Override
+        public void setEmbeddedStage(EmbeddedStageInterface embeddedStage) {
+            synchronized (scenePeerLock) {
+                stagePeer = embeddedStage;
+                if (stagePeer != null) {
+                    stagePeer.setSize(width, height);
+                    stagePeer.setLocation(0, 0);
+                }
+            }
+        }
+
+        @Override
+        public void setEmbeddedScene(EmbeddedSceneInterface embeddedScene) {
+            synchronized (scenePeerLock) {
+                scenePeer = embeddedScene;
+                if (scenePeer != null) {
+                    scenePeer.setSize(width, height);
+                    scenePeer.setPixelScaleFactor(scaleFactor);
+                }
+            }
+            synchronized (frameMonitor) {
+                frameCount.set(0);
+                renderedFrameCount = 0;
+            }
+        }
+
+        @Override
+        public void repaint() {
+            // Called on the render thread, holding the render lock, when the
+            // scene has rendered a new frame. Must not take scenePeerLock.
+            frameCount.incrementAndGet();
+            synchronized (frameMonitor) {
+                frameMonitor.notifyAll();
+            }
+        }
+
+        @Override
+        public boolean requestFocus() {
+            return false;
+        }
+
+        @Override
+        public boolean traverseFocusOut(boolean forward) {
+            return false;
+        }
+
+        @Override
+        public void setPreferredSize(int width, int height) {
+            // The size is controlled by the caller only
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+        }
+
+        @Override
+        public void setCursor(CursorFrame cursorFrame) {
+        }
+
+        @Override
+        public boolean grabFocus() {
+            return false;
+        }
+
+        @Override
+        public void ungrabFocus() {
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package javafx.embed.swing.modified;
+
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.RepaintManager;
+import javax.swing.SwingUtilities;
+
+/**
+ * An optional clock shared by all {@link SynchronizedJFXPanel}s that
+ * aligns their paints to a fixed rate, by default the refresh rate of the
+ * display.
+ * <p>
+ * Without the clock, each panel posts its own event to the event dispatch
+ * thread whenever its scene renders a frame, so many panels cause many
+ * small, unaligned paint cycles. With the clock enabled, panels with the
+ * {@link RepaintPolicy#COALESCED} or {@link RepaintPolicy#ON_DEMAND} policy
+ * only mark themselves dirty. On every tick, a single event fetches the
+ * frames of all dirty panels, which report their changed areas to the
+ * {@link RepaintManager}, and then paints them in one
+ * {@link RepaintManager#paintDirtyRegions() paintDirtyRegions} pass, so
+ * overlapping areas and shared ancestors are painted once per tick.
+ * <p>
+ * A tick whose work takes longer than the tick period, or that is due
+ * while the previous tick has not run yet, counts as an overrun. The
+ * statistics can be read at any time, and a {@link TickListener} can be
+ * notified after every tick that painted something.
+ */
+public final class PaintClock {
+    private PaintClock() {} // no instances
+
+    /**
+     * A callback notified on the event dispatch thread after each tick
+     * that painted at least one panel.
+     */
+    @FunctionalInterface
+    public interface TickListener {
+        /**
+         * Called after a tick.
+         *
+         * @param panels the number of panels painted by the tick
+         * @param workNanos the time the tick took on the event dispatch
+         *        thread, in nanoseconds
+         * @param overrun whether the tick took longer than the tick period
+         */
+        void tickCompleted(int panels, long workNanos, boolean overrun);
+    }
+
+    private static final Queue<SynchronizedJFXPanel> dirtyPanels = new ConcurrentLinkedQueue<>();
+    private static final List<TickListener> listeners = new CopyOnWriteArrayList<>();
+    // Set while a tick event is waiting for or running on the EDT
+    private static final AtomicBoolean tickPending = new AtomicBoolean();
+
+    // Guarded by PaintClock.class
+    private static ScheduledExecutorService executor;
+    private static int rate = 0; // 0: display refresh rate
+
+    private static volatile boolean enabled = false;
+
+    private static volatile long tickCount = 0;
+    // Incremented on the clock thread and the EDT
+    private static final AtomicLong overrunCount = new AtomicLong();
+    private static volatile int lastTickPanels = 0;
+    private static volatile long lastTickNanos = 0;
+    private static volatile long maxTickNanos = 0;
+
+    /**
+     * Starts or stops the clock. Panels marked dirty when the clock stops
+     * are painted right away.
+     *
+     * @param enable {@code true} to start the clock
+     */
+    public static synchronized void setEnabled(boolean enable) {
+        if (enable == enabled) {
+            return;
+        }
+        if (enable) {
+            int hz = (rate > 0) ? rate : getDisplayRefreshRate();
+            long period = TimeUnit.SECONDS.toNanos(1) / hz;
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "SynchronizedJFXPanel paint clock");
+                t.setDaemon(true);
+                return t;
+            });
+            // Each tick carries the period it was scheduled with, so that a
+            // concurrent restart at another rate does not skew overruns
+            executor.scheduleAtFixedRate(() -> tick(period), period, period,
+                                         TimeUnit.NANOSECONDS);
+            enabled = true;
+        } else {
+            enabled = false;
+            executor.shutdown();
+            executor = null;
+            // Flush what is left
+            SwingUtilities.invokeLater(PaintClock::flushDirtyPanels);
+        }
+    }
+
+    /**
+     * Returns whether the clock is running.
+     *
+     * @return {@code true} if the clock is enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets the tick rate of the clock. Takes effect the next time the
+     * clock is enabled.
+     *
+     * @param hz the number of ticks per second, or 0 to use the refresh
+     *        rate of the default screen
+     * @throws IllegalArgumentException if {@code hz} is negative
+     */
+    public static synchronized void setRate(int hz) {
+        if (hz < 0) {
+            throw new IllegalArgumentException("Invalid rate: " + hz);
+        }
+        rate = hz;
+    }
+
+    /**
+     * Returns the tick rate set with {@link #setRate(int)}.
+     *
+     * @return the tick rate, or 0 for the display refresh rate
+     */
+    public static synchronized int getRate() {
+        return rate;
+    }
+
+    /**
+     * Adds a listener notified after each tick that painted something.
+     *
+     * @param listener the listener to add
+     */
+    public static void addTickListener(TickListener listener) {
+        if (listener != null) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Removes a listener added with {@link #addTickListener}.
+     *
+     * @param listener the listener to remove
+     */
+    public static void removeTickListener(TickListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the number of ticks that painted at least one panel.
+     *
+     * @return the number of ticks
+     */
+    public static long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * Returns the number of ticks that took longer than the tick period or
+     * were skipped because the previous tick had not completed.
+     *
+     * @return the number of overruns
+     */
+    public static long getOverrunCount() {
+        return overrunCount.get();
+    }
+
+    /**
+     * Returns the number of panels painted by the last tick.
+     *
+     * @return the number of panels
+     */
+    public static int getLastTickPanelCount() {
+        return lastTickPanels;
+    }
+
+    /**
+     * Returns the time the last tick took on the event dispatch thread.
+     *
+     * @return the tick time in nanoseconds
+     */
+    public static long getLastTickTime() {
+        return lastTickNanos;
+    }
+
+    /**
+     * Returns the longest time a tick took on the event dispatch thread.
+     *
+     * @return the maximum tick time in nanoseconds
+     */
+    public static long getMaxTickTime() {
+        return maxTickNanos;
+    }
+
+    /*
+     * Called on any thread by a panel whose scene rendered a frame, once
+     * per fetch.
+     */
+    static void markDirty(SynchronizedJFXPanel panel) {
+        dirtyPanels.add(panel);
+        if (!enabled) {
+            // The clock was stopped concurrently
+            SwingUtilities.invokeLater(PaintClock::flushDirtyPanels);
+        }
+    }
+
+    private static int getDisplayRefreshRate() {
+        if (!GraphicsEnvironment.isHeadless()) {
+            DisplayMode mode = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDisplayMode();
+            if (mode.getRefreshRate() != DisplayMode.REFRESH_RATE_UNKNOWN) {
+                return mode.getRefreshRate();
+            }
+        }
+        return 60;
+    }
+
+    // Called on the clock thread
+    private static void tick(long period) {
+        if (dirtyPanels.isEmpty()) {
+            return;
+        }
+        if (!tickPending.compareAndSet(false, true)) {
+            // The EDT has not caught up with the previous tick
+            overrunCount.incrementAndGet();
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            try {
+                paintDirtyPanels(period);
+            } finally {
+                tickPending.set(false);
+            }
+        });
+    }
+
+    // Called on EDT when the clock has stopped. Paints what is left without
+    // counting overruns.
+    private static void flushDirtyPanels() {
+        paintDirtyPanels(Long.MAX_VALUE);
+    }
+
+    // Called on EDT. Fetches the frames of all dirty panels, then paints
+    // them in one RepaintManager pass.
+    private static void paintDirtyPanels(long period) {
+        long start = System.nanoTime();
+        int count = 0;
+        // Usually a single manager, unless panels live in several
+        // AppContexts
+        List<RepaintManager> managers = new ArrayList<>(1);
+        SynchronizedJFXPanel panel;
+        while ((panel = dirtyPanels.poll()) != null) {
+            try {
+                panel.fetchFrameOnTick();
+                RepaintManager manager = RepaintManager.currentManager(panel);
+                if (!managers.contains(manager)) {
+                    managers.add(manager);
+                }
+            } catch (Throwable th) {
+                th.printStackTrace();
+            }
+            count++;
+        }
+        if (count == 0) {
+            return;
+        }
+        for (RepaintManager manager : managers) {
+            try {
+                manager.paintDirtyRegions();
+            } catch (Throwable th) {
+                th.printStackTrace();
+            }
+        }
+        long work = System.nanoTime() - start;
+        boolean overrun = work > period;
+        tickCount++;
+        if (overrun) {
+            overrunCount.incrementAndGet();
+        }
+        lastTickPanels = count;
+        lastTickNanos = work;
+        maxTickNanos = Math.max(maxTickNanos, work);
+        for (TickListener l : listeners) {
+            try {
+                l.tickCompleted(count, work, overrun);
+            } catch (Throwable th) {
+                th.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package javafx.embed.swing.modified;
+
+/**
+ * Controls how the frames rendered by the JavaFX scene of a
+ * {@link SynchronizedJFXPanel} are turned into Swing paints.
+ *
+ * @see SynchronizedJFXPanel#setRepaintPolicy(RepaintPolicy)
+ */
+public enum RepaintPolicy {
+    /**
+     * Every frame is fetched as soon as the event dispatch thread gets to
+     * it, and painted synchronously with
+     * {@link javax.swing.JComponent#paintImmediately}, without waiting for
+     * the {@code RepaintManager}. Gives the lowest latency, e.g. for
+     * tickers.
+     */
+    IMMEDIATE,
+    /**
+     * Frames are fetched at most once per event dispatch cycle and painted
+     * through the {@code RepaintManager}, together with other pending Swing
+     * paints. This is the default. While the {@link PaintClock} is
+     * enabled, frames are fetched and painted on its ticks instead.
+     */
+    COALESCED,
+    /**
+     * Frames are fetched at most at the rate set with
+     * {@link SynchronizedJFXPanel#setMaxFrameRate(int)}; frames rendered in
+     * between are skipped. Suited for background content such as charts.
+     */
+    FIXED_RATE,
+    /**
+     * Frames are only fetched shortly after the panel forwarded an input
+     * event to the scene, or after
+     * {@link SynchronizedJFXPanel#requestFrame()} was called. Suited for
+     * static content such as forms.
+     */
+    ON_DEMAND
+}
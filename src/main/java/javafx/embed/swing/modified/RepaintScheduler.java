@@ -0,0 +1,90 @@
+package javafx.embed.swing.modified;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.Timer;
+
+/**
+ * Runs delayed tasks on the EDT for all {@link SynchronizedJFXPanel}s,
+ * e.g. the frame fetches of panels with a
+ * {@link RepaintPolicy#FIXED_RATE fixed-rate} repaint policy.
+ * <p>
+ * A single Swing timer drives a timer wheel: tasks are put into the slot
+ * of the tick they are due on, and each tick runs the tasks of one slot.
+ * Scheduling and running a task is therefore constant time regardless of
+ * the number of panels, and the timer only runs while tasks are pending.
+ * <p>
+ * Accessed on the EDT only.
+ */
+final class RepaintScheduler {
+    private RepaintScheduler() {} // no instances
+
+    static final int TICK_MILLIS = 5;
+    // Covers delays up to 1.28 seconds; longer delays take several turns
+    private static final int SLOTS = 256;
+
+    @SuppressWarnings("unchecked")
+    private static final List<Task>[] wheel = new List[SLOTS];
+    private static int cursor = 0;
+    private static int taskCount = 0;
+    private static Timer timer;
+
+    private static final class Task {
+        final Runnable runnable;
+        int turns;
+
+        Task(Runnable runnable, int turns) {
+            this.runnable = runnable;
+            this.turns = turns;
+        }
+    }
+
+    /*
+     * Runs the task on EDT after at least the specified delay, rounded up
+     * to whole ticks.
+     */
+    static void schedule(Runnable runnable, long delayMillis) {
+        int ticks = (int) Math.max(1, (delayMillis + TICK_MILLIS - 1) / TICK_MILLIS);
+        int slot = (cursor + ticks) % SLOTS;
+        List<Task> tasks = wheel[slot];
+        if (tasks == null) {
+            tasks = wheel[slot] = new ArrayList<>();
+        }
+        tasks.add(new Task(runnable, (ticks - 1) / SLOTS));
+        taskCount++;
+        if (timer == null) {
+            timer = new Timer(TICK_MILLIS, e -> tick());
+            timer.setCoalesce(true);
+        }
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    private static void tick() {
+        cursor = (cursor + 1) % SLOTS;
+        List<Task> tasks = wheel[cursor];
+        if (tasks != null && !tasks.isEmpty()) {
+            // Tasks may schedule new tasks, possibly into this slot
+            List<Task> due = new ArrayList<>(tasks.size());
+            for (int i = tasks.size() - 1; i >= 0; i--) {
+                Task t = tasks.get(i);
+                if (t.turns-- == 0) {
+                    due.add(t);
+                    tasks.remove(i);
+                }
+            }
+            taskCount -= due.size();
+            for (int i = due.size() - 1; i >= 0; i--) {
+                try {
+                    due.get(i).runnable.run();
+                } catch (Throwable th) {
+                    th.printStackTrace();
+                }
+            }
+        }
+        if (taskCount == 0) {
+            timer.stop();
+        }
+    }
+}
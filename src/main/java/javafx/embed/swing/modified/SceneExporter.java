@@ -0,0 +1,254 @@
+package javafx.embed.swing.modified;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.print.PageFormat;
+import java.awt.print.Printable;
+import java.awt.print.PrinterException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import com.sun.javafx.tk.Toolkit;
+import javafx.application.Platform;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.WritableImage;
+import javafx.scene.transform.Scale;
+
+/**
+ * This class provides utility methods for exporting the content of a JavaFX
+ * {@link Scene}, such as the scene of a {@link SynchronizedJFXPanel}, at a
+ * resolution higher than the screen, e.g. for printing or reports.
+ * <p>
+ * The scene is rendered tile by tile, each tile being a snapshot of the
+ * scene's root at the requested scale, restricted to the tile's bounds.
+ * Every tile is passed to a {@link TileSink} before the next one is
+ * rendered, so the full bitmap of an export never has to be held in memory
+ * unless the sink itself assembles it.
+ * <p>
+ * Snapshots are taken on the JavaFX application thread. The export methods
+ * can be called on any thread; when called on another thread, tiles are
+ * passed to the sink on the calling thread, so slow sinks, e.g. ones that
+ * encode tiles to a file, do not block the JavaFX application thread.
+ */
+public final class SceneExporter {
+    private SceneExporter() {} // no instances
+
+    /**
+     * Receives the tiles of an export.
+     */
+    @FunctionalInterface
+    public interface TileSink {
+        /**
+         * Called for each tile of the export, row by row.
+         * <p>
+         * The tile image is reused for subsequent tiles; it must not be used
+         * after this method returns without copying. Only the top-left
+         * {@code width} x {@code height} pixels of the image are valid.
+         *
+         * @param tile the image holding the tile's pixels
+         * @param x the x coordinate of the tile in the exported image
+         * @param y the y coordinate of the tile in the exported image
+         * @param width the width of the tile
+         * @param height the height of the tile
+         * @throws IOException if the tile cannot be processed; the export is
+         *         aborted
+         */
+        void tileRendered(BufferedImage tile, int x, int y, int width, int height)
+                throws IOException;
+    }
+
+    /**
+     * Returns the size in pixels of the image an export of the specified
+     * scene at the specified scale produces.
+     *
+     * @param scene the scene to export
+     * @param scale the number of pixels per logical pixel of the scene
+     * @return an array holding the width and height of the export
+     */
+    public static int[] getExportSize(Scene scene, double scale) {
+        return new int[] {
+            (int) Math.ceil(scene.getWidth() * scale),
+            (int) Math.ceil(scene.getHeight() * scale)
+        };
+    }
+
+    /**
+     * Renders the specified scene at the specified scale, tile by tile, into
+     * the specified sink.
+     *
+     * @param scene the scene to export
+     * @param scale the number of pixels per logical pixel of the scene, e.g.
+     *        {@code 300.0 / 96} for 300 DPI output of a scene laid out for
+     *        a 96 DPI screen
+     * @param tileSize the edge length of the tiles
+     * @param sink the sink receiving the tiles
+     * @throws IOException if the sink fails, or if the calling thread is
+     *         interrupted while waiting for a tile
+     * @throws IllegalArgumentException if {@code scale} or {@code tileSize}
+     *         is not positive
+     */
+    public static void export(Scene scene, double scale, int tileSize, TileSink sink)
+            throws IOException
+    {
+        if (!(scale > 0)) {
+            throw new IllegalArgumentException("Invalid scale: " + scale);
+        }
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Invalid tile size: " + tileSize);
+        }
+        int size[] = getExportSize(scene, scale);
+        int width = size[0];
+        int height = size[1];
+
+        TileRenderer renderer = new TileRenderer(scene, scale);
+        for (int y = 0; y < height; y += tileSize) {
+            int th = Math.min(tileSize, height - y);
+            for (int x = 0; x < width; x += tileSize) {
+                int tw = Math.min(tileSize, width - x);
+                BufferedImage tile = renderer.render(x, y, tw, th, tileSize);
+                sink.tileRendered(tile, x, y, tw, th);
+            }
+        }
+    }
+
+    /**
+     * Renders the specified scene at the specified scale into a single
+     * {@code TYPE_INT_ARGB} image. This is a convenience for exports that
+     * fit in memory; larger exports should pass their own {@link TileSink}
+     * to {@link #export}.
+     *
+     * @param scene the scene to export
+     * @param scale the number of pixels per logical pixel of the scene
+     * @param tileSize the edge length of the tiles the scene is rendered in
+     * @return the exported image
+     * @throws IOException if the calling thread is interrupted while
+     *         waiting for a tile
+     */
+    public static BufferedImage exportImage(Scene scene, double scale, int tileSize)
+            throws IOException
+    {
+        int size[] = getExportSize(scene, scale);
+        BufferedImage image = new BufferedImage(Math.max(size[0], 1), Math.max(size[1], 1),
+                                                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        try {
+            g2d.setComposite(AlphaComposite.Src);
+            export(scene, scale, tileSize, (tile, x, y, w, h) ->
+                    g2d.drawImage(tile, x, y, x + w, y + h, 0, 0, w, h, null));
+        } finally {
+            g2d.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Creates a {@link Printable} that prints the specified scene on a
+     * single page, scaled to fit the imageable area of the page while
+     * keeping its aspect ratio. The scene is rendered at the full resolution
+     * of the printer, and its tiles are drawn into the printer graphics one
+     * by one.
+     *
+     * @param scene the scene to print
+     * @param tileSize the edge length of the tiles the scene is rendered in
+     * @return a printable for the scene
+     */
+    public static Printable createPrintable(Scene scene, int tileSize) {
+        return (Graphics g, PageFormat pf, int pageIndex) -> {
+            if (pageIndex > 0) {
+                return Printable.NO_SUCH_PAGE;
+            }
+            double sw = scene.getWidth();
+            double sh = scene.getHeight();
+            if (sw <= 0 || sh <= 0) {
+                return Printable.PAGE_EXISTS;
+            }
+            Graphics2D g2d = (Graphics2D) g.create();
+            try {
+                double fit = Math.min(pf.getImageableWidth() / sw,
+                                      pf.getImageableHeight() / sh);
+                // Device pixels per page unit, e.g. 300 / 72 for a 300 DPI printer
+                AffineTransform tx = g2d.getTransform();
+                double deviceScale = Math.max(Math.hypot(tx.getScaleX(), tx.getShearY()), 1);
+                double scale = fit * deviceScale;
+                g2d.translate(pf.getImageableX(), pf.getImageableY());
+                g2d.scale(1 / deviceScale, 1 / deviceScale);
+                export(scene, scale, tileSize, (tile, x, y, w, h) ->
+                        g2d.drawImage(tile, x, y, x + w, y + h, 0, 0, w, h, null));
+            } catch (IOException e) {
+                throw new PrinterException(e.toString());
+            } finally {
+                g2d.dispose();
+            }
+            return Printable.PAGE_EXISTS;
+        };
+    }
+
+    /*
+     * Takes the snapshots of an export, reusing the images between tiles.
+     */
+    private static final class TileRenderer {
+        private final Parent root;
+        private final SnapshotParameters params = new SnapshotParameters();
+        // Accessed on FX thread only
+        private WritableImage fullTile;
+        // The converted tile, handed to the sink
+        private BufferedImage tile;
+
+        TileRenderer(Scene scene, double scale) {
+            root = scene.getRoot();
+            params.setTransform(new Scale(scale, scale));
+            params.setFill(scene.getFill());
+        }
+
+        BufferedImage render(int x, int y, int w, int h, int tileSize) throws IOException {
+            if (Toolkit.getToolkit().isFxUserThread()) {
+                renderOnFxThread(x, y, w, h, tileSize);
+                return tile;
+            }
+            CountDownLatch latch = new CountDownLatch(1);
+            RuntimeException failure[] = new RuntimeException[1];
+            Platform.runLater(() -> {
+                try {
+                    renderOnFxThread(x, y, w, h, tileSize);
+                } catch (RuntimeException e) {
+                    failure[0] = e;
+                } finally {
+                    latch.countDown();
+                }
+            });
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while rendering tile");
+            }
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            return tile;
+        }
+
+        private void renderOnFxThread(int x, int y, int w, int h, int tileSize) {
+            // The viewport is given in the coordinates of the scaled scene
+            params.setViewport(new Rectangle2D(x, y, w, h));
+            WritableImage wimg;
+            if (w == tileSize && h == tileSize) {
+                if (fullTile == null) {
+                    fullTile = new WritableImage(tileSize, tileSize);
+                }
+                wimg = fullTile;
+            } else {
+                // Tiles at the right and bottom edges only
+                wimg = new WritableImage(w, h);
+            }
+            wimg = root.snapshot(params, wimg);
+            tile = SwingFXUtils.fromFXImage(wimg, tile);
+        }
+    }
+}
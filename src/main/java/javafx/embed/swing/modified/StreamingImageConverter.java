@@ -0,0 +1,183 @@
+package javafx.embed.swing.modified;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.concurrent.CancellationException;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+
+/**
+ * This class provides utility methods for converting very large images into
+ * JavaFX {@link WritableImage} objects without materializing the whole
+ * source as a {@link BufferedImage} first.
+ * <p>
+ * The source is read in horizontal bands of a fixed height. Each band is
+ * decoded or rendered into a single working image that is reused for every
+ * band, and then written into the destination {@code WritableImage}. Peak
+ * memory use is therefore the destination image plus one band, regardless
+ * of the source size.
+ * <p>
+ * The conversion methods may be called on any thread. If the destination
+ * image is already displayed in a live scene, they must be called on the
+ * JavaFX application thread; otherwise it is recommended to convert on a
+ * background thread and display the image once the conversion completes.
+ */
+public final class StreamingImageConverter {
+    private StreamingImageConverter() {} // no instances
+
+    /**
+     * A callback notified after each band is converted.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Called after a band of rows has been written to the destination.
+         *
+         * @param rowsDone the number of rows converted so far
+         * @param totalRows the total number of rows of the image
+         * @return {@code true} to continue, or {@code false} to cancel the
+         *         conversion
+         */
+        boolean bandConverted(int rowsDone, int totalRows);
+    }
+
+    /**
+     * Decodes an image from the specified {@link ImageReader} band by band
+     * into a JavaFX {@link WritableImage}, creating a new object if needed.
+     * <p>
+     * The reader must already have its input set. Bands are requested with
+     * {@link ImageReadParam#setSourceRegion}, so readers that support
+     * random access to rows decode each row only once. Readers of
+     * sequential formats may have to skip over the rows of previous bands.
+     *
+     * @param reader the reader to decode the image with
+     * @param imageIndex the index of the image to decode
+     * @param wimg an optional {@code WritableImage} object that can be used
+     *        to store the pixels; a new one is created if it is null or too
+     *        small
+     * @param bandHeight the number of rows decoded at a time
+     * @param listener an optional listener notified after each band, or null
+     * @return an {@code Image} object holding the decoded pixels
+     * @throws IOException if an error occurs while reading
+     * @throws CancellationException if the listener cancelled the conversion;
+     *         the destination then holds the bands converted so far
+     * @throws IllegalArgumentException if {@code bandHeight} is not positive
+     */
+    public static WritableImage toFXImage(ImageReader reader, int imageIndex,
+                                          WritableImage wimg, int bandHeight,
+                                          ProgressListener listener)
+            throws IOException
+    {
+        checkBandHeight(bandHeight);
+        int width = reader.getWidth(imageIndex);
+        int height = reader.getHeight(imageIndex);
+        wimg = prepareDestination(wimg, width, height);
+
+        ImageReadParam param = reader.getDefaultReadParam();
+        Rectangle region = new Rectangle();
+        BufferedImage band = null;
+        for (int y = 0; y < height; y += bandHeight) {
+            int h = Math.min(bandHeight, height - y);
+            region.setBounds(0, y, width, h);
+            param.setSourceRegion(region);
+            // The first band is allocated by the reader in its preferred
+            // format; later bands are decoded into the same image
+            param.setDestination(band);
+            band = reader.read(imageIndex, param);
+            SwingFXUtils.toFXImage(band, 0, 0, width, h, wimg, 0, y);
+            notifyProgress(listener, y + h, height);
+        }
+        return wimg;
+    }
+
+    /**
+     * Renders the specified {@link RenderedImage} band by band into a JavaFX
+     * {@link WritableImage}, creating a new object if needed. Only the tiles
+     * of the source that intersect the current band are requested, so tiled
+     * sources that compute or load their tiles lazily never have to be held
+     * in memory completely.
+     *
+     * @param src the image to convert
+     * @param wimg an optional {@code WritableImage} object that can be used
+     *        to store the pixels; a new one is created if it is null or too
+     *        small
+     * @param bandHeight the number of rows rendered at a time
+     * @param listener an optional listener notified after each band, or null
+     * @return an {@code Image} object holding the converted pixels
+     * @throws CancellationException if the listener cancelled the conversion;
+     *         the destination then holds the bands converted so far
+     * @throws IllegalArgumentException if {@code bandHeight} is not positive
+     */
+    public static WritableImage toFXImage(RenderedImage src, WritableImage wimg,
+                                          int bandHeight, ProgressListener listener)
+    {
+        checkBandHeight(bandHeight);
+        int width = src.getWidth();
+        int height = src.getHeight();
+        wimg = prepareDestination(wimg, width, height);
+
+        BufferedImage band = new BufferedImage(width, Math.min(bandHeight, height),
+                                               BufferedImage.TYPE_INT_ARGB_PRE);
+        AffineTransform tx = new AffineTransform();
+        Graphics2D g2d = band.createGraphics();
+        try {
+            g2d.setComposite(AlphaComposite.Src);
+            for (int y = 0; y < height; y += bandHeight) {
+                int h = Math.min(bandHeight, height - y);
+                g2d.setClip(0, 0, width, h);
+                tx.setToTranslation(-src.getMinX(), -src.getMinY() - y);
+                g2d.drawRenderedImage(src, tx);
+                SwingFXUtils.toFXImage(band, 0, 0, width, h, wimg, 0, y);
+                notifyProgress(listener, y + h, height);
+            }
+        } finally {
+            g2d.dispose();
+        }
+        return wimg;
+    }
+
+    private static void checkBandHeight(int bandHeight) {
+        if (bandHeight <= 0) {
+            throw new IllegalArgumentException("Invalid band height: " + bandHeight);
+        }
+    }
+
+    private static WritableImage prepareDestination(WritableImage wimg, int width, int height) {
+        if (wimg != null) {
+            int iw = (int) wimg.getWidth();
+            int ih = (int) wimg.getHeight();
+            if (iw < width || ih < height) {
+                wimg = null;
+            } else if (width < iw || height < ih) {
+                int empty[] = SwingFXUtils.getEmptyRow(iw);
+                PixelWriter pw = wimg.getPixelWriter();
+                PixelFormat<IntBuffer> pf = PixelFormat.getIntArgbPreInstance();
+                if (width < iw) {
+                    pw.setPixels(width, 0, iw - width, height, pf, empty, 0, 0);
+                }
+                if (height < ih) {
+                    pw.setPixels(0, height, iw, ih - height, pf, empty, 0, 0);
+                }
+            }
+        }
+        if (wimg == null) {
+            wimg = new WritableImage(width, height);
+        }
+        return wimg;
+    }
+
+    private static void notifyProgress(ProgressListener listener, int rowsDone, int totalRows) {
+        if (listener != null && !listener.bandConverted(rowsDone, totalRows)) {
+            throw new CancellationException("Image conversion cancelled at row " + rowsDone);
+        }
+    }
+}
@@ -36,14 +36,19 @@ import com.sun.javafx.cursor.ImageCursorFrame;
 import javafx.scene.image.Image;
 
 /**
- * This file was copied from the javafx.embed.swing package on January 27, 2016, 
- * but otherwise was not modified.
+ * This file was copied from the javafx.embed.swing package on January 27, 2016,
+ * and has since been modified to cache custom cursor image conversions.
  * An utility class to translate cursor types between embedded
  * application and Swing.
  *
  */
 class SwingCursors {
 
+    // Custom cursor images are immutable platform images, so their
+    // conversions can be shared by every cursor built from the same image
+    private static final SwingFXImageCache cursorImageCache =
+            new SwingFXImageCache(4 * 1024 * 1024);
+
     private static Cursor createCustomCursor(ImageCursorFrame cursorFrame) {
         Toolkit awtToolkit = Toolkit.getDefaultToolkit();
 
@@ -55,8 +60,9 @@ class SwingCursors {
         double scaledHotspotY = cursorFrame.getHotspotY() * nativeSize.getHeight() / imageHeight;
         Point hotspot = new Point((int)scaledHotspotX, (int)scaledHotspotY);
         
-        BufferedImage awtImage = SwingFXUtils.fromFXImage(
-                Image.impl_fromPlatformImage(cursorFrame.getPlatformImage()), null);
+        Object platformImage = cursorFrame.getPlatformImage();
+        BufferedImage awtImage = cursorImageCache.fromFXImage(platformImage,
+                () -> Image.impl_fromPlatformImage(platformImage));
         return awtToolkit.createCustomCursor(awtImage, hotspot, null);
     }
 
@@ -29,42 +29,146 @@ import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import com.sun.javafx.embed.AbstractEvents;
 import javafx.event.EventType;
+import javafx.scene.input.MouseButton;
 import javafx.scene.input.ScrollEvent;
 
 /**
- * This file was copied from the javafx.embed.swing package on January 27, 2016, 
- * but otherwise was not modified.
+ * This file was copied from the javafx.embed.swing package on January 27, 2016.
  * A utility class to translate event types and data between embedded
  * application and Swing.
+ * <p>
+ * The translations run for every forwarded event, so they are table
+ * lookups computed once: event IDs are contiguous ranges, and the
+ * modifier and button masks of interest are contiguous bits, so every
+ * combination of them indexes a precomputed result. The key path also
+ * shares immutable character arrays instead of allocating one per event.
  */
 class SwingEvents {
 
-    static int mouseIDToEmbedMouseType(int id) {
-        switch (id) {
-            case MouseEvent.MOUSE_PRESSED:
-                return AbstractEvents.MOUSEEVENT_PRESSED;
-            case MouseEvent.MOUSE_RELEASED:
-                return AbstractEvents.MOUSEEVENT_RELEASED;
-            case MouseEvent.MOUSE_CLICKED:
-                return AbstractEvents.MOUSEEVENT_CLICKED;
-            case MouseEvent.MOUSE_MOVED:
-                return AbstractEvents.MOUSEEVENT_MOVED;
-            case MouseEvent.MOUSE_DRAGGED:
-                return AbstractEvents.MOUSEEVENT_DRAGGED;
-            case MouseEvent.MOUSE_ENTERED:
-                return AbstractEvents.MOUSEEVENT_ENTERED;
-            case MouseEvent.MOUSE_EXITED:
-                return AbstractEvents.MOUSEEVENT_EXITED;
-            case MouseWheelEvent.MOUSE_WHEEL:
-                return AbstractEvents.MOUSEEVENT_WHEEL;
+    // Indexed by id - MOUSE_FIRST
+    private static final int MOUSE_TYPES[] = new int[MouseEvent.MOUSE_LAST - MouseEvent.MOUSE_FIRST + 1];
+    // Indexed by the BUTTON1..3_DOWN_MASK bits of the extended modifiers
+    // times 4, plus the button if it is at most BUTTON3
+    private static final int MOUSE_BUTTONS[] = new int[8 * 4];
+    // Indexed by id - KEY_FIRST
+    private static final int KEY_TYPES[] = new int[KeyEvent.KEY_LAST - KeyEvent.KEY_FIRST + 1];
+    // SHIFT, CTRL, META and ALT_DOWN_MASK are bits 6 to 9
+    private static final int KEY_MODIFIER_SHIFT = 6;
+    private static final int KEY_MODIFIERS[] = new int[16];
+    // BUTTON1, 2 and 3_DOWN_MASK are bits 10 to 12
+    private static final int BUTTON_MASK_SHIFT = 10;
+
+    // FX -> Swing tables. Modifier tables are indexed by alt | ctrl << 1 |
+    // meta << 2 | shift << 3, button tables by primary | secondary << 1 |
+    // middle << 2.
+    private static final int FX_KEY_MODIFIERS[] = new int[16];
+    private static final int FX_BUTTON_MASKS[] = new int[8];
+    private static final int FX_BUTTONS[] = new int[MouseButton.values().length];
+    private static final Map<EventType<?>, Integer> FX_MOUSE_IDS = new IdentityHashMap<>();
+    private static final Map<EventType<?>, Integer> FX_KEY_IDS = new IdentityHashMap<>();
+
+    private static final char NO_CHARS[] = new char[0];
+    // Shared single-character arrays for Latin-1; the scene only reads them
+    private static final char LATIN1_CHARS[][] = new char[256][];
+
+    static {
+        MOUSE_TYPES[MouseEvent.MOUSE_PRESSED - MouseEvent.MOUSE_FIRST] = AbstractEvents.MOUSEEVENT_PRESSED;
+        MOUSE_TYPES[MouseEvent.MOUSE_RELEASED - MouseEvent.MOUSE_FIRST] = AbstractEvents.MOUSEEVENT_RELEASED;
+        MOUSE_TYPES[MouseEvent.MOUSE_CLICKED - MouseEvent.MOUSE_FIRST] = AbstractEvents.MOUSEEVENT_CLICKED;
+        MOUSE_TYPES[MouseEvent.MOUSE_MOVED - MouseEvent.MOUSE_FIRST] = AbstractEvents.MOUSEEVENT_MOVED;
+        MOUSE_TYPES[MouseEvent.MOUSE_DRAGGED - MouseEvent.MOUSE_FIRST] = AbstractEvents.MOUSEEVENT_DRAGGED;
+        MOUSE_TYPES[MouseEvent.MOUSE_ENTERED - MouseEvent.MOUSE_FIRST] = AbstractEvents.MOUSEEVENT_ENTERED;
+        MOUSE_TYPES[MouseEvent.MOUSE_EXITED - MouseEvent.MOUSE_FIRST] = AbstractEvents.MOUSEEVENT_EXITED;
+        MOUSE_TYPES[MouseWheelEvent.MOUSE_WHEEL - MouseEvent.MOUSE_FIRST] = AbstractEvents.MOUSEEVENT_WHEEL;
+
+        for (int masks = 0; masks < 8; masks++) {
+            for (int button = 0; button < 4; button++) {
+                MOUSE_BUTTONS[masks * 4 + button] =
+                        computeEmbedMouseButton(button, masks << BUTTON_MASK_SHIFT);
+            }
+        }
+
+        KEY_TYPES[KeyEvent.KEY_PRESSED - KeyEvent.KEY_FIRST] = AbstractEvents.KEYEVENT_PRESSED;
+        KEY_TYPES[KeyEvent.KEY_RELEASED - KeyEvent.KEY_FIRST] = AbstractEvents.KEYEVENT_RELEASED;
+        KEY_TYPES[KeyEvent.KEY_TYPED - KeyEvent.KEY_FIRST] = AbstractEvents.KEYEVENT_TYPED;
+
+        for (int bits = 0; bits < 16; bits++) {
+            KEY_MODIFIERS[bits] = computeEmbedKeyModifiers(bits << KEY_MODIFIER_SHIFT);
+        }
+
+        for (int bits = 0; bits < 16; bits++) {
+            int mods = 0;
+            if ((bits & 1) != 0) {
+                mods |= InputEvent.ALT_DOWN_MASK;
+            }
+            if ((bits & 2) != 0) {
+                mods |= InputEvent.CTRL_DOWN_MASK;
+            }
+            if ((bits & 4) != 0) {
+                mods |= InputEvent.META_DOWN_MASK;
+            }
+            if ((bits & 8) != 0) {
+                mods |= InputEvent.SHIFT_DOWN_MASK;
+            }
+            FX_KEY_MODIFIERS[bits] = mods;
+        }
+        for (int bits = 0; bits < 8; bits++) {
+            int mods = 0;
+            if ((bits & 1) != 0) {
+                mods |= MouseEvent.BUTTON1_DOWN_MASK;
+            }
+            if ((bits & 2) != 0) {
+                mods |= MouseEvent.BUTTON3_DOWN_MASK;
+            }
+            if ((bits & 4) != 0) {
+                mods |= MouseEvent.BUTTON2_DOWN_MASK;
+            }
+            FX_BUTTON_MASKS[bits] = mods;
+        }
+        FX_BUTTONS[MouseButton.PRIMARY.ordinal()] = MouseEvent.BUTTON1;
+        FX_BUTTONS[MouseButton.SECONDARY.ordinal()] = MouseEvent.BUTTON3;
+        FX_BUTTONS[MouseButton.MIDDLE.ordinal()] = MouseEvent.BUTTON2;
+
+        FX_MOUSE_IDS.put(javafx.scene.input.MouseEvent.MOUSE_MOVED, MouseEvent.MOUSE_MOVED);
+        FX_MOUSE_IDS.put(javafx.scene.input.MouseEvent.MOUSE_PRESSED, MouseEvent.MOUSE_PRESSED);
+        FX_MOUSE_IDS.put(javafx.scene.input.MouseEvent.MOUSE_RELEASED, MouseEvent.MOUSE_RELEASED);
+        FX_MOUSE_IDS.put(javafx.scene.input.MouseEvent.MOUSE_CLICKED, MouseEvent.MOUSE_CLICKED);
+        FX_MOUSE_IDS.put(javafx.scene.input.MouseEvent.MOUSE_ENTERED, MouseEvent.MOUSE_ENTERED);
+        FX_MOUSE_IDS.put(javafx.scene.input.MouseEvent.MOUSE_EXITED, MouseEvent.MOUSE_EXITED);
+        FX_MOUSE_IDS.put(javafx.scene.input.MouseEvent.MOUSE_DRAGGED, MouseEvent.MOUSE_DRAGGED);
+        FX_MOUSE_IDS.put(javafx.scene.input.MouseEvent.DRAG_DETECTED, -1);
+
+        FX_KEY_IDS.put(javafx.scene.input.KeyEvent.KEY_PRESSED, KeyEvent.KEY_PRESSED);
+        FX_KEY_IDS.put(javafx.scene.input.KeyEvent.KEY_RELEASED, KeyEvent.KEY_RELEASED);
+        FX_KEY_IDS.put(javafx.scene.input.KeyEvent.KEY_TYPED, KeyEvent.KEY_TYPED);
+
+        for (int c = 0; c < LATIN1_CHARS.length; c++) {
+            LATIN1_CHARS[c] = new char[] { keyCharToEmbedKeyChar((char) c) };
         }
-        return 0;
+    }
+
+    static int mouseIDToEmbedMouseType(int id) {
+        int index = id - MouseEvent.MOUSE_FIRST;
+        // The unsigned comparison also rejects negative indices
+        return (Integer.compareUnsigned(index, MOUSE_TYPES.length) < 0) ? MOUSE_TYPES[index] : 0;
     }
 
     static int mouseButtonToEmbedMouseButton(int button, int extModifiers) {
+        int masks = (extModifiers >> BUTTON_MASK_SHIFT) & 7;
+        // Other buttons are reported as no button, like NOBUTTON
+        int b = (Integer.compareUnsigned(button, 4) < 0) ? button : 0;
+        return MOUSE_BUTTONS[masks * 4 + b];
+    }
+
+    /*
+     * The reference translation the MOUSE_BUTTONS table is filled from.
+     */
+    static int computeEmbedMouseButton(int button, int extModifiers) {
         int abstractButton = AbstractEvents.MOUSEEVENT_NONE_BUTTON;
         switch (button) {
             case MouseEvent.BUTTON1:
@@ -98,18 +202,18 @@ class SwingEvents {
     }
 
     static int keyIDToEmbedKeyType(int id) {
-        switch (id) {
-            case KeyEvent.KEY_PRESSED:
-                return AbstractEvents.KEYEVENT_PRESSED;
-            case KeyEvent.KEY_RELEASED:
-                return AbstractEvents.KEYEVENT_RELEASED;
-            case KeyEvent.KEY_TYPED:
-                return AbstractEvents.KEYEVENT_TYPED;
-        }
-        return 0;
+        int index = id - KeyEvent.KEY_FIRST;
+        return (Integer.compareUnsigned(index, KEY_TYPES.length) < 0) ? KEY_TYPES[index] : 0;
     }
 
     static int keyModifiersToEmbedKeyModifiers(int extModifiers) {
+        return KEY_MODIFIERS[(extModifiers >> KEY_MODIFIER_SHIFT) & 15];
+    }
+
+    /*
+     * The reference translation the KEY_MODIFIERS table is filled from.
+     */
+    static int computeEmbedKeyModifiers(int extModifiers) {
         int embedModifiers = 0;
         if ((extModifiers & InputEvent.SHIFT_DOWN_MASK) != 0) {
             embedModifiers |= AbstractEvents.MODIFIER_SHIFT;
@@ -131,120 +235,70 @@ class SwingEvents {
         return ch == '\n' ? '\r' : ch;
     }
 
+    /*
+     * Returns the characters of a key event as the embedded scene expects
+     * them. The returned array must not be modified; for Latin-1
+     * characters it is shared by all events.
+     */
+    static char[] keyCharToEmbedKeyChars(char ch) {
+        if (ch == KeyEvent.CHAR_UNDEFINED) {
+            return NO_CHARS;
+        }
+        if (ch < LATIN1_CHARS.length) {
+            return LATIN1_CHARS[ch];
+        }
+        return new char[] { ch };
+    }
+
     // FX -> Swing conversion methods
 
     static int fxMouseEventTypeToMouseID(javafx.scene.input.MouseEvent event) {
         EventType<?> type = event.getEventType();
-        if (type == javafx.scene.input.MouseEvent.MOUSE_MOVED) {
-            return MouseEvent.MOUSE_MOVED;
-        }
-        if (type == javafx.scene.input.MouseEvent.MOUSE_PRESSED) {
-            return MouseEvent.MOUSE_PRESSED;
-        }
-        if (type == javafx.scene.input.MouseEvent.MOUSE_RELEASED) {
-            return MouseEvent.MOUSE_RELEASED;
-        }
-        if (type == javafx.scene.input.MouseEvent.MOUSE_CLICKED) {
-            return MouseEvent.MOUSE_CLICKED;
+        Integer id = FX_MOUSE_IDS.get(type);
+        if (id == null) {
+            throw new RuntimeException("Unknown MouseEvent type: " + type);
         }
-        if (type == javafx.scene.input.MouseEvent.MOUSE_ENTERED) {
-            return MouseEvent.MOUSE_ENTERED;
-        }
-        if (type == javafx.scene.input.MouseEvent.MOUSE_EXITED) {
-            return MouseEvent.MOUSE_EXITED;
-        }
-        if (type == javafx.scene.input.MouseEvent.MOUSE_DRAGGED) {
-            return MouseEvent.MOUSE_DRAGGED;
-        }
-        if (type == javafx.scene.input.MouseEvent.DRAG_DETECTED) {
-            return -1;
-        }
-        throw new RuntimeException("Unknown MouseEvent type: " + type);
+        return id;
+    }
+
+    static char fxKeyCharToKeyChar(char ch) {
+        // Convert Fx CR character to Swing LF character.
+        return ch == '\r' ? '\n' : ch;
     }
 
     static int fxMouseModsToMouseMods(javafx.scene.input.MouseEvent event) {
-        int mods = 0;
-        if (event.isAltDown()) {
-            mods |= InputEvent.ALT_DOWN_MASK;
-        }
-        if (event.isControlDown()) {
-            mods |= InputEvent.CTRL_DOWN_MASK;
-        }
-        if (event.isMetaDown()) {
-            mods |= InputEvent.META_DOWN_MASK;
-        }
-        if (event.isShiftDown()) {
-            mods |= InputEvent.SHIFT_DOWN_MASK;
-        }
-        if (event.isPrimaryButtonDown()) {
-            mods |= MouseEvent.BUTTON1_DOWN_MASK;
-        }
-        if (event.isSecondaryButtonDown()) {
-            mods |= MouseEvent.BUTTON3_DOWN_MASK;
-        }
-        if (event.isMiddleButtonDown()) {
-            mods |= MouseEvent.BUTTON2_DOWN_MASK;
-        }
-        return mods;
+        return FX_KEY_MODIFIERS[fxModifierIndex(event.isAltDown(), event.isControlDown(),
+                                                event.isMetaDown(), event.isShiftDown())]
+                | FX_BUTTON_MASKS[(event.isPrimaryButtonDown() ? 1 : 0)
+                                  | (event.isSecondaryButtonDown() ? 2 : 0)
+                                  | (event.isMiddleButtonDown() ? 4 : 0)];
     }
 
     static int fxMouseButtonToMouseButton(javafx.scene.input.MouseEvent event) {
-        switch (event.getButton()) {
-            case PRIMARY:
-                return MouseEvent.BUTTON1;
-            case SECONDARY:
-                return MouseEvent.BUTTON3;
-            case MIDDLE:
-                return MouseEvent.BUTTON2;
-        }
-        return 0;
+        MouseButton button = event.getButton();
+        return (button != null) ? FX_BUTTONS[button.ordinal()] : 0;
     }
 
     static int fxKeyEventTypeToKeyID(javafx.scene.input.KeyEvent event) {
         EventType<?> eventType = event.getEventType();
-        if (eventType == javafx.scene.input.KeyEvent.KEY_PRESSED) {
-            return KeyEvent.KEY_PRESSED;
-        }
-        if (eventType == javafx.scene.input.KeyEvent.KEY_RELEASED) {
-            return KeyEvent.KEY_RELEASED;
+        Integer id = FX_KEY_IDS.get(eventType);
+        if (id == null) {
+            throw new RuntimeException("Unknown KeyEvent type: " + eventType);
         }
-        if (eventType == javafx.scene.input.KeyEvent.KEY_TYPED) {
-            return KeyEvent.KEY_TYPED;
-        }
-        throw new RuntimeException("Unknown KeyEvent type: " + eventType);
+        return id;
     }
 
     static int fxKeyModsToKeyMods(javafx.scene.input.KeyEvent event) {
-        int mods = 0;
-        if (event.isAltDown()) {
-            mods |= InputEvent.ALT_DOWN_MASK;
-        }
-        if (event.isControlDown()) {
-            mods |= InputEvent.CTRL_DOWN_MASK;
-        }
-        if (event.isMetaDown()) {
-            mods |= InputEvent.META_DOWN_MASK;
-        }
-        if (event.isShiftDown()) {
-            mods |= InputEvent.SHIFT_DOWN_MASK;
-        }
-        return mods;
+        return FX_KEY_MODIFIERS[fxModifierIndex(event.isAltDown(), event.isControlDown(),
+                                                event.isMetaDown(), event.isShiftDown())];
     }
 
     static int fxScrollModsToMouseWheelMods(ScrollEvent event) {
-        int mods = 0;
-        if (event.isAltDown()) {
-            mods |= InputEvent.ALT_DOWN_MASK;
-        }
-        if (event.isControlDown()) {
-            mods |= InputEvent.CTRL_DOWN_MASK;
-        }
-        if (event.isMetaDown()) {
-            mods |= InputEvent.META_DOWN_MASK;
-        }
-        if (event.isShiftDown()) {
-            mods |= InputEvent.SHIFT_DOWN_MASK;
-        }
-        return mods;
+        return FX_KEY_MODIFIERS[fxModifierIndex(event.isAltDown(), event.isControlDown(),
+                                                event.isMetaDown(), event.isShiftDown())];
+    }
+
+    private static int fxModifierIndex(boolean alt, boolean ctrl, boolean meta, boolean shift) {
+        return (alt ? 1 : 0) | (ctrl ? 2 : 0) | (meta ? 4 : 0) | (shift ? 8 : 0);
     }
 }
@@ -0,0 +1,260 @@
+package javafx.embed.swing.modified;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import com.sun.javafx.tk.Toolkit;
+
+/**
+ * A live image shared between Swing and JavaFX.
+ * <p>
+ * A {@code SwingFXImageBridge} owns a single pixel store in
+ * {@code INT_ARGB_PRE} layout. Swing sees it as a {@link BufferedImage}
+ * that paints directly into the store, and JavaFX sees it as a
+ * {@link WritableImage}. Unlike
+ * {@link SwingFXUtils#toFXImage(BufferedImage, WritableImage)}, no per-frame
+ * conversion is made: after painting, the caller marks the changed area
+ * with {@link #markDirty(int, int, int, int)} and only the dirty regions
+ * are uploaded to the JavaFX image on the next pulse.
+ * <p>
+ * Here is a typical usage pattern:
+ * <pre>
+ *     SwingFXImageBridge bridge = new SwingFXImageBridge(640, 480);
+ *     imageView.setImage(bridge.getFXImage());
+ *     ...
+ *     // Any thread, typically the event dispatch thread
+ *     Graphics2D g = bridge.createGraphics();
+ *     try {
+ *         g.fillRect(10, 10, 50, 50);
+ *     } finally {
+ *         g.dispose();
+ *     }
+ *     bridge.markDirty(10, 10, 50, 50);
+ * </pre>
+ * <p>
+ * The JavaFX image is only written on the JavaFX application thread. Pixels
+ * that are painted while an upload is in progress may be picked up by that
+ * upload only partially, but they are always uploaded completely on the
+ * upload that follows the corresponding {@code markDirty} call.
+ */
+public final class SwingFXImageBridge {
+
+    // Above this many disjoint regions, new regions are merged into the
+    // region whose bounds grow the least
+    private static final int MAX_DIRTY_REGIONS = 8;
+
+    private final int width;
+    private final int height;
+
+    private final BufferedImage bufferedImage;
+    private final int[] pixels;
+    private final WritableImage fxImage;
+
+    private final Object dirtyLock = new Object();
+    // Guarded by dirtyLock
+    private final Rectangle[] dirtyRegions = new Rectangle[MAX_DIRTY_REGIONS];
+    private int dirtyCount = 0;
+
+    // Accessed on FX thread only
+    private final Rectangle[] uploadRegions = new Rectangle[MAX_DIRTY_REGIONS];
+
+    private final AtomicBoolean updatePending = new AtomicBoolean(false);
+    private final Runnable updateTask = () -> {
+        updatePending.set(false);
+        update();
+    };
+
+    /**
+     * Creates a new bridge with the specified size. All pixels are initially
+     * transparent.
+     *
+     * @param width the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @throws IllegalArgumentException if either dimension is not positive
+     */
+    public SwingFXImageBridge(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        pixels = ((DataBufferInt) bufferedImage.getRaster().getDataBuffer()).getData();
+        fxImage = new WritableImage(width, height);
+        for (int i = 0; i < MAX_DIRTY_REGIONS; i++) {
+            dirtyRegions[i] = new Rectangle();
+            uploadRegions[i] = new Rectangle();
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the Swing view of the shared pixel store. Painting into this
+     * image changes the shared pixels immediately; the changes become
+     * visible in JavaFX once they are marked dirty.
+     *
+     * @return the {@code BufferedImage} backed by the shared pixel store
+     */
+    public BufferedImage getBufferedImage() {
+        return bufferedImage;
+    }
+
+    /**
+     * Returns the JavaFX view of the shared pixel store.
+     *
+     * @return the {@code Image} kept in sync with the shared pixel store
+     */
+    public Image getFXImage() {
+        return fxImage;
+    }
+
+    /**
+     * Convenience method to create a {@code Graphics2D} painting into the
+     * shared pixel store.
+     *
+     * @return a new {@code Graphics2D} for the {@code BufferedImage} view
+     */
+    public Graphics2D createGraphics() {
+        return bufferedImage.createGraphics();
+    }
+
+    /**
+     * Marks a region of the shared pixel store as changed and schedules an
+     * upload of all dirty regions to the JavaFX image. This method can be
+     * called on any thread. The region is clipped to the image bounds.
+     *
+     * @param x the x coordinate of the changed region
+     * @param y the y coordinate of the changed region
+     * @param w the width of the changed region
+     * @param h the height of the changed region
+     */
+    public void markDirty(int x, int y, int w, int h) {
+        int x0 = Math.max(0, x);
+        int y0 = Math.max(0, y);
+        int x1 = Math.min(width, x + w);
+        int y1 = Math.min(height, y + h);
+        if (x1 <= x0 || y1 <= y0) {
+            return;
+        }
+        synchronized (dirtyLock) {
+            addDirtyRegion(x0, y0, x1 - x0, y1 - y0);
+        }
+        if (updatePending.compareAndSet(false, true)) {
+            SwingFXUtils.runOnFxThread(updateTask);
+        }
+    }
+
+    /**
+     * Marks the whole shared pixel store as changed.
+     *
+     * @see #markDirty(int, int, int, int)
+     */
+    public void markAllDirty() {
+        markDirty(0, 0, width, height);
+    }
+
+    /**
+     * Uploads the regions marked dirty so far to the JavaFX image. Uploads
+     * are scheduled automatically by {@link #markDirty}, so this method
+     * only needs to be called to flush pending changes synchronously, e.g.
+     * right before taking a snapshot.
+     *
+     * @throws IllegalStateException if not called on the JavaFX application
+     *         thread
+     */
+    public void update() {
+        Toolkit.getToolkit().checkFxUserThread();
+        int count;
+        synchronized (dirtyLock) {
+            count = dirtyCount;
+            for (int i = 0; i < count; i++) {
+                uploadRegions[i].setBounds(dirtyRegions[i]);
+            }
+            dirtyCount = 0;
+        }
+        if (count == 0) {
+            return;
+        }
+        PixelWriter pw = fxImage.getPixelWriter();
+        PixelFormat<IntBuffer> pf = PixelFormat.getIntArgbPreInstance();
+        for (int i = 0; i < count; i++) {
+            Rectangle r = uploadRegions[i];
+            pw.setPixels(r.x, r.y, r.width, r.height, pf,
+                         pixels, r.y * width + r.x, width);
+        }
+    }
+
+    // Called with dirtyLock held
+    private void addDirtyRegion(int x, int y, int w, int h) {
+        int x1 = x + w;
+        int y1 = y + h;
+        // Fold into an existing region that already contains or touches it
+        for (int i = 0; i < dirtyCount; i++) {
+            Rectangle r = dirtyRegions[i];
+            if (x <= r.x + r.width && r.x <= x1 && y <= r.y + r.height && r.y <= y1) {
+                r.add(x, y);
+                r.add(x1, y1);
+                coalesceDirtyRegions(i);
+                return;
+            }
+        }
+        if (dirtyCount < MAX_DIRTY_REGIONS) {
+            dirtyRegions[dirtyCount++].setBounds(x, y, w, h);
+            return;
+        }
+        // Out of slots: grow the region whose area increases the least
+        int best = 0;
+        long bestGrowth = Long.MAX_VALUE;
+        for (int i = 0; i < dirtyCount; i++) {
+            Rectangle r = dirtyRegions[i];
+            long uw = Math.max(r.x + r.width, x1) - Math.min(r.x, x);
+            long uh = Math.max(r.y + r.height, y1) - Math.min(r.y, y);
+            long growth = uw * uh - (long) r.width * r.height;
+            if (growth < bestGrowth) {
+                bestGrowth = growth;
+                best = i;
+            }
+        }
+        dirtyRegions[best].add(x, y);
+        dirtyRegions[best].add(x1, y1);
+        coalesceDirtyRegions(best);
+    }
+
+    // Merges regions that now intersect the grown region at index i
+    private void coalesceDirtyRegions(int i) {
+        Rectangle grown = dirtyRegions[i];
+        for (int j = dirtyCount - 1; j >= 0; j--) {
+            if (j == i) {
+                continue;
+            }
+            Rectangle r = dirtyRegions[j];
+            if (grown.intersects(r)) {
+                grown.add(r);
+                // Move the last region into the freed slot, keeping the
+                // Rectangle instances so no allocation is needed
+                dirtyCount--;
+                Rectangle last = dirtyRegions[dirtyCount];
+                dirtyRegions[dirtyCount] = r;
+                dirtyRegions[j] = last;
+                if (dirtyCount == i) {
+                    i = j;
+                    grown = dirtyRegions[i];
+                }
+            }
+        }
+    }
+}
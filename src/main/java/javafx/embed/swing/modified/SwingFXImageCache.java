@@ -0,0 +1,253 @@
+package javafx.embed.swing.modified;
+
+import java.awt.image.BufferedImage;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+/**
+ * A cache of {@link SwingFXUtils} conversion results, keyed by the identity
+ * of the source image.
+ * <p>
+ * Source images are referenced weakly, so caching a conversion never keeps
+ * the source alive; once a source is garbage collected its entry is dropped.
+ * The cache is bounded by the total size of the converted images, estimated
+ * at four bytes per pixel, and evicts the least recently used entries when
+ * the bound is exceeded.
+ * <p>
+ * The cache cannot detect changes to a mutable source image, such as a
+ * {@code BufferedImage} that is painted into or a {@code WritableImage}.
+ * Callers that modify a source after it has been converted must call
+ * {@link #invalidate(Object)} for it. Converted images returned by the
+ * cache are shared between callers and must not be modified.
+ * <p>
+ * Instances of this class are thread safe.
+ */
+public final class SwingFXImageCache {
+
+    private final long maxBytes;
+
+    // Guarded by this
+    private final Map<IdentityWeakKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReferenceQueue<Object> staleKeys = new ReferenceQueue<>();
+    private long sizeInBytes = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * Creates a new cache holding converted images of at most
+     * {@code maxBytes} bytes in total.
+     *
+     * @param maxBytes the maximum estimated size of all cached images
+     * @throws IllegalArgumentException if {@code maxBytes} is negative
+     */
+    public SwingFXImageCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Negative cache size: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a JavaFX image with the pixels of the specified
+     * {@code BufferedImage}, converting it with
+     * {@link SwingFXUtils#toFXImage(BufferedImage, WritableImage)} only if
+     * no conversion is cached for this {@code BufferedImage} instance.
+     *
+     * @param bimg the {@code BufferedImage} to convert
+     * @return the cached or newly converted image; callers must not modify it
+     */
+    public WritableImage toFXImage(BufferedImage bimg) {
+        Object cached = lookup(bimg);
+        if (cached instanceof WritableImage) {
+            return (WritableImage) cached;
+        }
+        WritableImage wimg = SwingFXUtils.toFXImage(bimg, null);
+        store(bimg, wimg, wimg.getWidth(), wimg.getHeight());
+        return wimg;
+    }
+
+    /**
+     * Returns a {@code BufferedImage} with the pixels of the specified JavaFX
+     * image, converting it with
+     * {@link SwingFXUtils#fromFXImage(Image, BufferedImage)} only if no
+     * conversion is cached for this {@code Image} instance.
+     *
+     * @param img the JavaFX {@code Image} to convert
+     * @return the cached or newly converted image, or null if the
+     *         {@code Image} is not readable; callers must not modify it
+     */
+    public BufferedImage fromFXImage(Image img) {
+        Object cached = lookup(img);
+        if (cached instanceof BufferedImage) {
+            return (BufferedImage) cached;
+        }
+        return convertFXImage(img, img);
+    }
+
+    /*
+     * Same as fromFXImage(Image), but caches the result under the specified
+     * key. The image is only obtained on a cache miss. This allows callers
+     * to cache conversions of short-lived Image wrappers, such as those
+     * created around a platform image, without creating the wrapper on
+     * every lookup.
+     */
+    BufferedImage fromFXImage(Object key, Supplier<Image> img) {
+        Object cached = lookup(key);
+        if (cached instanceof BufferedImage) {
+            return (BufferedImage) cached;
+        }
+        return convertFXImage(key, img.get());
+    }
+
+    // Converts the image and caches the result under the key
+    private BufferedImage convertFXImage(Object key, Image img) {
+        BufferedImage bimg = SwingFXUtils.fromFXImage(img, null);
+        if (bimg != null) {
+            store(key, bimg, bimg.getWidth(), bimg.getHeight());
+        }
+        return bimg;
+    }
+
+    /**
+     * Discards the cached conversion of the specified source image, if any.
+     * This method must be called after a cached source image is modified.
+     *
+     * @param source the source image that has been modified
+     */
+    public synchronized void invalidate(Object source) {
+        Entry e = entries.remove(new IdentityWeakKey(source, null));
+        if (e != null) {
+            sizeInBytes -= e.bytes;
+        }
+    }
+
+    /**
+     * Discards all cached conversions. The hit and miss counters are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        sizeInBytes = 0;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getSizeInBytes() {
+        expungeStaleEntries();
+        return sizeInBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        expungeStaleEntries();
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of entries dropped to keep the cache within its
+     * size bound. Entries dropped by {@link #invalidate}, {@link #clear} or
+     * garbage collection of their source are not counted.
+     *
+     * @return the number of evicted entries
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    private synchronized Object lookup(Object source) {
+        expungeStaleEntries();
+        Entry e = entries.get(new IdentityWeakKey(source, null));
+        if (e == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return e.converted;
+    }
+
+    private synchronized void store(Object source, Object converted, double width, double height) {
+        long bytes = 4L * (long) width * (long) height;
+        if (bytes > maxBytes) {
+            return;
+        }
+        Entry old = entries.put(new IdentityWeakKey(source, staleKeys), new Entry(converted, bytes));
+        if (old != null) {
+            sizeInBytes -= old.bytes;
+        }
+        sizeInBytes += bytes;
+        Iterator<Entry> it = entries.values().iterator();
+        while (sizeInBytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            sizeInBytes -= eldest.bytes;
+            evictionCount++;
+        }
+    }
+
+    // Called with the lock held
+    private void expungeStaleEntries() {
+        Object ref;
+        while ((ref = staleKeys.poll()) != null) {
+            Entry e = entries.remove(ref);
+            if (e != null) {
+                sizeInBytes -= e.bytes;
+            }
+        }
+    }
+
+    private static final class Entry {
+        final Object converted;
+        final long bytes;
+
+        Entry(Object converted, long bytes) {
+            this.converted = converted;
+            this.bytes = bytes;
+        }
+    }
+
+    /*
+     * A weak reference that compares by the identity of its referent. A
+     * cleared key is only equal to itself, which is what allows it to be
+     * removed when it is polled from the reference queue.
+     */
+    private static final class IdentityWeakKey extends WeakReference<Object> {
+        private final int hash;
+
+        IdentityWeakKey(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof IdentityWeakKey)) {
+                return false;
+            }
+            Object referent = get();
+            return referent != null && referent == ((IdentityWeakKey) obj).get();
+        }
+    }
+}
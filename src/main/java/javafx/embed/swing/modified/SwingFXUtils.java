@@ -33,6 +33,7 @@ import java.awt.image.BufferedImage;
 import java.nio.IntBuffer;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Arrays;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -52,8 +53,8 @@ import sun.awt.image.IntegerComponentRaster;
 import javax.swing.*;
 
 /**
- * This file was copied from the javafx.embed.swing package on January 27, 2016, 
- * but otherwise was not modified.
+ * This file was copied from the javafx.embed.swing package on January 27, 2016,
+ * and has since been extended with additional conversion methods.
  * This class provides utility methods for converting data types between
  * Swing/AWT and JavaFX formats.
  * @since JavaFX 2.2
@@ -61,6 +62,30 @@ import javax.swing.*;
 public class SwingFXUtils {
     private SwingFXUtils() {} // no instances
 
+    /**
+     * The resampling methods available to the scaling conversion methods.
+     *
+     * @see #toFXImage(BufferedImage, int, int, Resampling, WritableImage)
+     */
+    public enum Resampling {
+        /**
+         * Each destination pixel takes the value of the nearest source pixel.
+         * This is the fastest method, but it aliases when downscaling.
+         */
+        NEAREST_NEIGHBOR,
+        /**
+         * Each destination pixel is interpolated from the four nearest
+         * source pixels. Suitable for moderate scale factors.
+         */
+        BILINEAR,
+        /**
+         * Each destination pixel is the average of all source pixels it
+         * covers. This is the slowest method, but it gives the best results
+         * for large downscale factors.
+         */
+        AREA_AVERAGING
+    }
+
     /**
      * Snapshots the specified {@link BufferedImage} and stores a copy of
      * its pixels into a JavaFX {@link Image} object, creating a new
@@ -106,7 +131,7 @@ public class SwingFXUtils {
             if (iw < bw || ih < bh) {
                 wimg = null;
             } else if (bw < iw || bh < ih) {
-                int empty[] = new int[iw];
+                int empty[] = getEmptyRow(iw);
                 PixelWriter pw = wimg.getPixelWriter();
                 PixelFormat<IntBuffer> pf = PixelFormat.getIntArgbPreInstance();
                 if (bw < iw) {
@@ -132,6 +157,341 @@ public class SwingFXUtils {
         return wimg;
     }
 
+    /**
+     * Copies a rectangular region of the specified {@link BufferedImage}
+     * into an existing JavaFX {@link WritableImage} at the given offset.
+     * Only the pixels of the region are converted and written, so this
+     * method can be used to incrementally update a large image at a cost
+     * proportional to the size of the change. Pixels of the
+     * {@code WritableImage} outside the destination region are left
+     * untouched.
+     * <p>
+     * Sources of type {@code TYPE_INT_ARGB} and {@code TYPE_INT_ARGB_PRE}
+     * are written directly from their backing storage. Other types are
+     * converted through a per-thread scratch buffer that is reused across
+     * calls, so repeated updates do not allocate.
+     *
+     * @param bimg the {@code BufferedImage} to copy pixels from
+     * @param srcX the x coordinate of the source region
+     * @param srcY the y coordinate of the source region
+     * @param width the width of the region
+     * @param height the height of the region
+     * @param wimg the {@code WritableImage} to copy pixels to
+     * @param dstX the x coordinate of the destination region
+     * @param dstY the y coordinate of the destination region
+     * @throws IllegalArgumentException if the region does not fit in either
+     *         the source or the destination image
+     */
+    public static void toFXImage(BufferedImage bimg, int srcX, int srcY,
+                                 int width, int height,
+                                 WritableImage wimg, int dstX, int dstY)
+    {
+        checkRegion(srcX, srcY, width, height, bimg.getWidth(), bimg.getHeight());
+        checkRegion(dstX, dstY, width, height,
+                    (int) wimg.getWidth(), (int) wimg.getHeight());
+        if (width == 0 || height == 0) {
+            return;
+        }
+        PixelWriter pw = wimg.getPixelWriter();
+        switch (bimg.getType()) {
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE: {
+                IntegerComponentRaster icr = (IntegerComponentRaster) bimg.getRaster();
+                int data[] = icr.getDataStorage();
+                int scan = icr.getScanlineStride();
+                int offset = icr.getDataOffset(0) + srcY * scan + srcX;
+                PixelFormat<IntBuffer> pf = (bimg.isAlphaPremultiplied() ?
+                                             PixelFormat.getIntArgbPreInstance() :
+                                             PixelFormat.getIntArgbInstance());
+                pw.setPixels(dstX, dstY, width, height, pf, data, offset, scan);
+                break;
+            }
+            default: {
+                // Convert a band of rows at a time through the scratch buffer
+                int rows = Math.max(1, Math.min(height, SCRATCH_PIXELS / width));
+                int scratch[] = getScratchBuffer(rows * width);
+                // Premultiply here to match the native FX format, which
+                // keeps the PixelWriter on its plain copy loop
+                PixelFormat<IntBuffer> pf = PixelFormat.getIntArgbPreInstance();
+                for (int y = 0; y < height; y += rows) {
+                    int h = Math.min(rows, height - y);
+                    bimg.getRGB(srcX, srcY + y, width, h, scratch, 0, width);
+                    AlphaKernels.premultiply(scratch, 0, width, h, width);
+                    pw.setPixels(dstX, dstY + y, width, h, pf, scratch, 0, width);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Converts the specified {@link BufferedImage} into a JavaFX
+     * {@link Image} of the given size, resampling the pixels while they are
+     * copied. This is intended for thumbnails: the image is converted at
+     * its display size, so it neither needs a full size intermediate copy
+     * nor has to be scaled by JavaFX every time it is rendered.
+     * <p>
+     * The source is read one row at a time, so the working memory of the
+     * conversion is proportional to the source width, not its area.
+     * <p>
+     * The optional JavaFX {@link WritableImage} parameter may be reused
+     * to store the resampled pixels. A new {@code Image} will be created if
+     * the supplied object is null or too small.
+     *
+     * @param bimg the {@code BufferedImage} object to be converted
+     * @param width the width of the converted image
+     * @param height the height of the converted image
+     * @param resampling the method used to compute the converted pixels
+     * @param wimg an optional {@code WritableImage} object that can be
+     *        used to store the returned pixel data
+     * @return an {@code Image} object holding the resampled pixels
+     * @throws IllegalArgumentException if either target dimension is not
+     *         positive
+     */
+    public static WritableImage toFXImage(BufferedImage bimg, int width, int height,
+                                          Resampling resampling, WritableImage wimg)
+    {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid target size: " + width + "x" + height);
+        }
+        if (wimg != null) {
+            int iw = (int) wimg.getWidth();
+            int ih = (int) wimg.getHeight();
+            if (iw < width || ih < height) {
+                wimg = null;
+            } else if (width < iw || height < ih) {
+                int empty[] = getEmptyRow(iw);
+                PixelWriter pw = wimg.getPixelWriter();
+                PixelFormat<IntBuffer> pf = PixelFormat.getIntArgbPreInstance();
+                if (width < iw) {
+                    pw.setPixels(width, 0, iw - width, height, pf, empty, 0, 0);
+                }
+                if (height < ih) {
+                    pw.setPixels(0, height, iw, ih - height, pf, empty, 0, 0);
+                }
+            }
+        }
+        if (wimg == null) {
+            wimg = new WritableImage(width, height);
+        }
+        switch (resampling) {
+            case NEAREST_NEIGHBOR:
+                scaleNearest(bimg, width, height, wimg.getPixelWriter());
+                break;
+            case BILINEAR:
+                scaleBilinear(bimg, width, height, wimg.getPixelWriter());
+                break;
+            case AREA_AVERAGING:
+            default:
+                scaleAreaAveraging(bimg, width, height, wimg.getPixelWriter());
+                break;
+        }
+        return wimg;
+    }
+
+    /**
+     * Reads one row of the source image as INT_ARGB_PRE pixels.
+     */
+    private static void readPreRow(BufferedImage bimg, int y, int row[]) {
+        int sw = bimg.getWidth();
+        switch (bimg.getType()) {
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+            case BufferedImage.TYPE_INT_RGB: {
+                IntegerComponentRaster icr = (IntegerComponentRaster) bimg.getRaster();
+                System.arraycopy(icr.getDataStorage(),
+                                 icr.getDataOffset(0) + y * icr.getScanlineStride(),
+                                 row, 0, sw);
+                if (bimg.getType() == BufferedImage.TYPE_INT_ARGB) {
+                    AlphaKernels.premultiply(row, 0, sw, 1, sw);
+                } else if (bimg.getType() == BufferedImage.TYPE_INT_RGB) {
+                    for (int x = 0; x < sw; x++) {
+                        row[x] |= 0xff000000;
+                    }
+                }
+                break;
+            }
+            default:
+                bimg.getRGB(0, y, sw, 1, row, 0, sw);
+                AlphaKernels.premultiply(row, 0, sw, 1, sw);
+                break;
+        }
+    }
+
+    private static void scaleNearest(BufferedImage bimg, int tw, int th, PixelWriter pw) {
+        int sw = bimg.getWidth();
+        int sh = bimg.getHeight();
+        int srcRow[] = new int[sw];
+        int dstRow[] = new int[tw];
+        int srcX[] = new int[tw];
+        for (int x = 0; x < tw; x++) {
+            srcX[x] = (int) (((2L * x + 1) * sw) / (2L * tw));
+        }
+        PixelFormat<IntBuffer> pf = PixelFormat.getIntArgbPreInstance();
+        int lastY = -1;
+        for (int y = 0; y < th; y++) {
+            int sy = (int) (((2L * y + 1) * sh) / (2L * th));
+            if (sy != lastY) {
+                readPreRow(bimg, sy, srcRow);
+                for (int x = 0; x < tw; x++) {
+                    dstRow[x] = srcRow[srcX[x]];
+                }
+                lastY = sy;
+            }
+            pw.setPixels(0, y, tw, 1, pf, dstRow, 0, tw);
+        }
+    }
+
+    private static void scaleBilinear(BufferedImage bimg, int tw, int th, PixelWriter pw) {
+        int sw = bimg.getWidth();
+        int sh = bimg.getHeight();
+        int row0[] = new int[sw];
+        int row1[] = new int[sw];
+        int dstRow[] = new int[tw];
+        // Horizontal sample positions and 8-bit weights of the right pixel
+        int x0[] = new int[tw];
+        int x1[] = new int[tw];
+        int wx[] = new int[tw];
+        for (int x = 0; x < tw; x++) {
+            double fx = Math.max(0.0, (x + 0.5) * sw / tw - 0.5);
+            x0[x] = Math.min((int) fx, sw - 1);
+            x1[x] = Math.min(x0[x] + 1, sw - 1);
+            wx[x] = (int) ((fx - x0[x]) * 256);
+        }
+        PixelFormat<IntBuffer> pf = PixelFormat.getIntArgbPreInstance();
+        int loaded0 = -1;
+        int loaded1 = -1;
+        for (int y = 0; y < th; y++) {
+            double fy = Math.max(0.0, (y + 0.5) * sh / th - 0.5);
+            int y0 = Math.min((int) fy, sh - 1);
+            int y1 = Math.min(y0 + 1, sh - 1);
+            int wy = (int) ((fy - y0) * 256);
+            // Rows advance monotonically, so the lower row can often be
+            // reused as the next upper row
+            if (y0 != loaded0) {
+                if (y0 == loaded1) {
+                    int tmp[] = row0;
+                    row0 = row1;
+                    row1 = tmp;
+                    loaded1 = -1;
+                } else {
+                    readPreRow(bimg, y0, row0);
+                }
+                loaded0 = y0;
+            }
+            if (y1 != loaded1) {
+                readPreRow(bimg, y1, row1);
+                loaded1 = y1;
+            }
+            for (int x = 0; x < tw; x++) {
+                int top = lerp(row0[x0[x]], row0[x1[x]], wx[x]);
+                int bottom = lerp(row1[x0[x]], row1[x1[x]], wx[x]);
+                dstRow[x] = lerp(top, bottom, wy);
+            }
+            pw.setPixels(0, y, tw, 1, pf, dstRow, 0, tw);
+        }
+    }
+
+    // Interpolates each 8-bit component of two pixels; w is in [0, 256)
+    private static int lerp(int p0, int p1, int w) {
+        if (p0 == p1) {
+            return p0;
+        }
+        int iw = 256 - w;
+        int ag0 = (p0 >>> 8) & 0x00ff00ff;
+        int rb0 = p0 & 0x00ff00ff;
+        int ag1 = (p1 >>> 8) & 0x00ff00ff;
+        int rb1 = p1 & 0x00ff00ff;
+        int ag = ((ag0 * iw + ag1 * w) >>> 8) & 0x00ff00ff;
+        int rb = ((rb0 * iw + rb1 * w) >>> 8) & 0x00ff00ff;
+        return (ag << 8) | rb;
+    }
+
+    private static void scaleAreaAveraging(BufferedImage bimg, int tw, int th, PixelWriter pw) {
+        int sw = bimg.getWidth();
+        int sh = bimg.getHeight();
+        int srcRow[] = new int[sw];
+        int dstRow[] = new int[tw];
+        // Source column span [colStart[x], colStart[x + 1]) of each target column
+        int colStart[] = new int[tw + 1];
+        for (int x = 0; x <= tw; x++) {
+            colStart[x] = (int) (((long) x * sw) / tw);
+        }
+        long sums[] = new long[tw * 4];
+        PixelFormat<IntBuffer> pf = PixelFormat.getIntArgbPreInstance();
+        for (int y = 0; y < th; y++) {
+            int sy0 = (int) (((long) y * sh) / th);
+            int sy1 = Math.max(sy0 + 1, (int) (((long) (y + 1) * sh) / th));
+            Arrays.fill(sums, 0L);
+            for (int sy = sy0; sy < sy1; sy++) {
+                readPreRow(bimg, sy, srcRow);
+                for (int x = 0; x < tw; x++) {
+                    int c0 = colStart[x];
+                    int c1 = Math.max(c0 + 1, colStart[x + 1]);
+                    long a = 0, r = 0, g = 0, b = 0;
+                    for (int sx = c0; sx < c1; sx++) {
+                        int p = srcRow[sx];
+                        a += p >>> 24;
+                        r += (p >> 16) & 0xff;
+                        g += (p >> 8) & 0xff;
+                        b += p & 0xff;
+                    }
+                    int i = x * 4;
+                    sums[i] += a;
+                    sums[i + 1] += r;
+                    sums[i + 2] += g;
+                    sums[i + 3] += b;
+                }
+            }
+            for (int x = 0; x < tw; x++) {
+                long n = (long) (sy1 - sy0) * Math.max(1, colStart[x + 1] - colStart[x]);
+                long half = n >> 1;
+                int i = x * 4;
+                int a = (int) ((sums[i] + half) / n);
+                int r = (int) ((sums[i + 1] + half) / n);
+                int g = (int) ((sums[i + 2] + half) / n);
+                int b = (int) ((sums[i + 3] + half) / n);
+                dstRow[x] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+            pw.setPixels(0, y, tw, 1, pf, dstRow, 0, tw);
+        }
+    }
+
+    private static void checkRegion(int x, int y, int w, int h, int imgW, int imgH) {
+        if (x < 0 || y < 0 || w < 0 || h < 0 || x + w > imgW || y + h > imgH) {
+            throw new IllegalArgumentException("Region [" + x + ", " + y + ", " + w
+                    + "x" + h + "] is out of image bounds " + imgW + "x" + imgH);
+        }
+    }
+
+    // Upper bound, in pixels, of the per-thread conversion buffer. Wider
+    // regions are converted one row at a time.
+    private static final int SCRATCH_PIXELS = 64 * 1024;
+
+    private static final ThreadLocal<int[]> scratchBuffer = new ThreadLocal<>();
+
+    private static int[] getScratchBuffer(int size) {
+        int buf[] = scratchBuffer.get();
+        if (buf == null || buf.length < size) {
+            buf = new int[Math.max(size, SCRATCH_PIXELS)];
+            scratchBuffer.set(buf);
+        }
+        return buf;
+    }
+
+    // A row of transparent pixels shared by all callers. It is never written
+    // to, so it is safe to hand out to PixelWriter from any thread.
+    private static volatile int emptyRow[] = new int[0];
+
+    static int[] getEmptyRow(int width) {
+        int row[] = emptyRow;
+        if (row.length < width) {
+            row = new int[width];
+            emptyRow = row;
+        }
+        return row;
+    }
+
     /**
      * Determine the optimal BufferedImage type to use for the specified
      * {@code fxFormat} allowing for the specified {@code bimg} to be used
@@ -261,7 +621,15 @@ public class SwingFXUtils {
         int scan = icr.getScanlineStride();
         int data[] = icr.getDataStorage();
         WritablePixelFormat<IntBuffer> pf = getAssociatedPixelFormat(bimg);
-        pr.getPixels(0, 0, iw, ih, pf, data, offset, scan);
+        if (!pf.isPremultiplied() && pr.getPixelFormat().isPremultiplied()) {
+            // Reading premultiplied data as INT_ARGB makes the PixelReader
+            // divide every component. Copy the data as is and convert it
+            // with the table based loop instead.
+            pr.getPixels(0, 0, iw, ih, PixelFormat.getIntArgbPreInstance(), data, offset, scan);
+            AlphaKernels.unpremultiply(data, offset, iw, ih, scan);
+        } else {
+            pr.getPixels(0, 0, iw, ih, pf, data, offset, scan);
+        }
         return bimg;
     }
 
@@ -35,6 +35,7 @@ import java.awt.Graphics2D;
 import java.awt.Insets;
 import java.awt.KeyboardFocusManager;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.Window;
 import java.awt.datatransfer.Clipboard;
 import java.awt.event.AWTEventListener;
@@ -48,14 +49,16 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
 import java.awt.im.InputMethodRequests;
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferInt;
 import java.lang.reflect.Method;
 import java.nio.IntBuffer;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.swing.JComponent;
 import javax.swing.SwingUtilities;
 
@@ -144,9 +147,19 @@ public class SynchronizedJFXPanel extends JComponent {
     // Accessed on EDT only
     private SwingDnD dnd;
 
-    private final Object scenePeerLock = new Object();
-    private EmbeddedStageInterface stagePeer;
-    private EmbeddedSceneInterface scenePeer;
+    // Guard the embedded scene against being replaced while it is in use.
+    // Paint and input take separate locks so they never wait for each
+    // other; replacing the scene takes all of them, always in the order
+    // lifecycle, paint, input. With the "javafx.embed.swing.modified.singleLock"
+    // system property set, all three are the same lock, as with the
+    // original single monitor, to compare their contention statistics.
+    private final ContentionLock lifecycleLock;
+    private final ContentionLock paintLock;
+    private final ContentionLock inputLock;
+
+    private volatile EmbeddedStageInterface stagePeer;
+    // Written with all locks held, so holding any of them keeps it stable
+    private volatile EmbeddedSceneInterface scenePeer;
 
     // The logical size of the FX content
     private int pWidth;
@@ -156,9 +169,16 @@ public class SynchronizedJFXPanel extends JComponent {
     // and physical (the back buffer's dimension) coordinate spaces
     private int scaleFactor = 1;
 
+    // The scale factor of the display. Equals scaleFactor unless adaptive
+    // resolution reduced it. Accessed on EDT only.
+    private int deviceScaleFactor = 1;
+
+    // Accessed on EDT only
+    private final AdaptiveResolution adaptiveResolution =
+            new AdaptiveResolution(this::restoreResolution);
+
     // Preferred size set from FX
-    private volatile int pPreferredWidth = -1;
-    private volatile int pPreferredHeight = -1;    
+    private volatile Dimension pPreferredSize = new Dimension(-1, -1);
 
     // Cached copy of this component's location on screen to avoid
     // calling getLocationOnScreen() under the tree lock on FX thread
@@ -166,7 +186,69 @@ public class SynchronizedJFXPanel extends JComponent {
     private volatile int screenY = 0;
 
     // Accessed on EDT only
-    private BufferedImage pixelsIm;
+    private FrameBuffer pixelsBuf;
+
+    // Receives the next frame, and is swapped with pixelsBuf once the
+    // frame is complete, so that only complete frames are painted.
+    // Accessed on EDT only.
+    private FrameBuffer stagingBuf;
+
+    // Incremented whenever the scene has rendered a new frame
+    private final AtomicLong frameSequence = new AtomicLong();
+    // The sequence number of the frame in pixelsBuf. Accessed on EDT only.
+    private long fetchedSequence = -1;
+    // Written on EDT only
+    private volatile long tornFrames = 0;
+    private volatile long duplicateFrames = 0;
+
+    // Accessed on EDT only
+    private boolean offHeapPixels = false;
+
+    private volatile FrameRecorder frameRecorder;
+    private volatile InputEventRecorder inputEventRecorder;
+
+    // Accessed on EDT only
+    private final WheelAccumulator wheelAccumulator = new WheelAccumulator(this);
+    private boolean wheelAccumulationEnabled = true;
+
+    private final FrameListenerSupport frameListeners = new FrameListenerSupport(this);
+
+    // Accessed on EDT only
+    private final DamageTracker damageTracker = new DamageTracker();
+
+    private volatile RepaintPolicy repaintPolicy = RepaintPolicy.COALESCED;
+    private volatile int maxFrameRate = 30;
+    // With the ON_DEMAND policy, frames are fetched until this time
+    private volatile long demandDeadline = System.nanoTime();
+    private static final long DEMAND_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    // Accessed on EDT only
+    private long lastFetchNanos = 0;
+    // The area to paint synchronously for the IMMEDIATE policy, while a
+    // frame is being fetched. Accessed on EDT only.
+    private Rectangle immediateDirty;
+
+    // Set when the scene asked for a repaint and the new frame has not been
+    // fetched yet, so that a burst of requests is handled by one fetch
+    private final AtomicBoolean fetchPending = new AtomicBoolean();
+
+    // Runs frame fetches and cursor updates after pending input
+    private final InputPriorityDispatcher dispatcher = new InputPriorityDispatcher(this);
+
+    // The time the first input event not yet followed by a painted frame
+    // was forwarded, 0 if none, and the latest frame sequence number at
+    // that time. Accessed on EDT only.
+    private long inputNanos = 0;
+    private long inputFrameSequence;
+    // Written on EDT only
+    private volatile long inputLatencyCount = 0;
+    private volatile long inputLatencyTotal = 0;
+    private volatile long inputLatencyMax = 0;
+    private volatile long inputLatencyLast = 0;
+
+    private volatile LatencyProbe latencyProbe;
+    // The time the input event being processed entered the panel, 0 if
+    // none or no probe is attached. Accessed on EDT only.
+    private long inputEntryNanos = 0;
 
     private volatile float opacity = 1.0f;
 
@@ -256,6 +338,14 @@ public class SynchronizedJFXPanel extends JComponent {
     public SynchronizedJFXPanel() {
         super();
 
+        if (Boolean.getBoolean("javafx.embed.swing.modified.singleLock")) {
+            lifecycleLock = paintLock = inputLock = new ContentionLock("scenePeer");
+        } else {
+            lifecycleLock = new ContentionLock("lifecycle");
+            paintLock = new ContentionLock("paint");
+            inputLock = new ContentionLock("input");
+        }
+
         initFx();
 
         hostContainer = new HostContainer();
@@ -360,8 +450,35 @@ public class SynchronizedJFXPanel extends JComponent {
         return false;
     }
 
-    private void sendMouseEventToFX(MouseEvent e) {
-        synchronized (scenePeerLock) {
+    /*
+     * Also called by FrameStreamServer for input of remote viewers, and
+     * by InputEventReplayer.
+     */
+    void sendMouseEventToFX(MouseEvent e) {
+        InputEventRecorder recorder = inputEventRecorder;
+        if (recorder != null) {
+            recorder.recordMouseEvent(e);
+        }
+        if (wheelAccumulationEnabled && (e instanceof MouseWheelEvent)) {
+            wheelAccumulator.add((MouseWheelEvent) e, inputEntryNanos);
+            inputEntryNanos = 0;
+            return;
+        }
+        forwardMouseEvent(e);
+    }
+
+    /*
+     * Called on EDT by WheelAccumulator with a consolidated wheel event.
+     */
+    void forwardWheelEvent(MouseWheelEvent e, long entryNanos) {
+        inputEntryNanos = entryNanos;
+        forwardMouseEvent(e);
+    }
+
+    private void forwardMouseEvent(MouseEvent e) {
+        openDemandWindow();
+        inputLock.lock();
+        try {
             if (scenePeer == null || !isFxEnabled()) {
                 return;
             }
@@ -403,6 +520,7 @@ public class SynchronizedJFXPanel extends JComponent {
             if (e.getID() == MouseEvent.MOUSE_PRESSED || e.getID() == MouseEvent.MOUSE_RELEASED) {
                 popupTrigger = e.isPopupTrigger();
             }
+            inputForwarded();
             scenePeer.mouseEvent(
                     SwingEvents.mouseIDToEmbedMouseType(e.getID()),
                     SwingEvents.mouseButtonToEmbedMouseButton(e.getButton(), extModifiers),
@@ -413,9 +531,14 @@ public class SynchronizedJFXPanel extends JComponent {
                     (extModifiers & MouseEvent.ALT_DOWN_MASK) != 0,
                     (extModifiers & MouseEvent.META_DOWN_MASK) != 0,
                     SwingEvents.getWheelRotation(e), popupTrigger);
+            inputDelivered(e.getID());
             if (e.isPopupTrigger()) {
                 scenePeer.menuEvent(e.getX(), e.getY(), e.getXOnScreen(), e.getYOnScreen(), false);
             }
+        } finally {
+            inputLock.unlock();
+            // Events that were not delivered are not measured
+            inputEntryNanos = 0;
         }
     }
 
@@ -428,6 +551,7 @@ public class SynchronizedJFXPanel extends JComponent {
      */
     @Override
     protected void processMouseEvent(MouseEvent e) {
+        inputEntered();
         if ((e.getID() == MouseEvent.MOUSE_PRESSED) &&
             (e.getButton() == MouseEvent.BUTTON1)) {
             if (!hasFocus()) {
@@ -448,6 +572,7 @@ public class SynchronizedJFXPanel extends JComponent {
      */
     @Override
     protected void processMouseMotionEvent(MouseEvent e) {
+        inputEntered();
         sendMouseEventToFX(e);
         super.processMouseMotionEvent(e);
     }
@@ -462,24 +587,38 @@ public class SynchronizedJFXPanel extends JComponent {
      */
     @Override
     protected void processMouseWheelEvent(MouseWheelEvent e) {
+        inputEntered();
         sendMouseEventToFX(e);
         super.processMouseWheelEvent(e);
     }
 
-    private void sendKeyEventToFX(final KeyEvent e) {
-        synchronized (scenePeerLock) {
+    /*
+     * Also called by FrameStreamServer for input of remote viewers, and
+     * by InputEventReplayer.
+     */
+    void sendKeyEventToFX(final KeyEvent e) {
+        InputEventRecorder recorder = inputEventRecorder;
+        if (recorder != null) {
+            recorder.recordKeyEvent(e);
+        }
+        openDemandWindow();
+        inputLock.lock();
+        try {
             if (scenePeer == null || !isFxEnabled()) {
                 return;
             }
 
-            char[] chars = (e.getKeyChar() == KeyEvent.CHAR_UNDEFINED)
-                    ? new char[]{}
-                    : new char[]{SwingEvents.keyCharToEmbedKeyChar(e.getKeyChar())};
+            char[] chars = SwingEvents.keyCharToEmbedKeyChars(e.getKeyChar());
 
+            inputForwarded();
             scenePeer.keyEvent(
                     SwingEvents.keyIDToEmbedKeyType(e.getID()),
                     e.getKeyCode(), chars,
                     SwingEvents.keyModifiersToEmbedKeyModifiers(e.getModifiersEx()));
+            inputDelivered(e.getID());
+        } finally {
+            inputLock.unlock();
+            inputEntryNanos = 0;
         }
     }
 
@@ -492,18 +631,27 @@ public class SynchronizedJFXPanel extends JComponent {
      */
     @Override
     protected void processKeyEvent(KeyEvent e) {
+        inputEntered();
         sendKeyEventToFX(e);
         super.processKeyEvent(e);
     }
 
     private void sendResizeEventToFX() {
+        InputEventRecorder recorder = inputEventRecorder;
+        if (recorder != null) {
+            recorder.recordResize(pWidth, pHeight);
+        }
+        openDemandWindow();
         if (stagePeer != null) {
             stagePeer.setSize(pWidth, pHeight);
         }
-        synchronized (scenePeerLock) {
+        paintLock.lock();
+        try {
             if (scenePeer != null) {
                 scenePeer.setSize(pWidth, pHeight);
             }
+        } finally {
+            paintLock.unlock();
         }
     }
 
@@ -555,6 +703,21 @@ public class SynchronizedJFXPanel extends JComponent {
         }
     }
 
+    /*
+     * Called on EDT by InputEventReplayer. Resizes the panel so that its
+     * content area has the specified size, without waiting for the
+     * component event, which is not delivered before the panel is shown.
+     */
+    void replayResize(int width, int height) {
+        if (getBorder() != null) {
+            Insets i = getBorder().getBorderInsets(this);
+            width += i.left + i.right;
+            height += i.top + i.bottom;
+        }
+        setSize(width, height);
+        updateComponentSize();
+    }
+
     // This methods should only be called on EDT
     private boolean updateScreenLocation() {
         synchronized (getTreeLock()) {
@@ -651,44 +814,114 @@ public class SynchronizedJFXPanel extends JComponent {
     // called on EDT only
     private void resizePixelBuffer(int newScaleFactor) {
         if ((pWidth <= 0) || (pHeight <= 0)) {
-             pixelsIm = null;
+             releasePixelBuffers();
         } else {
-            BufferedImage oldIm = pixelsIm;                        
-            pixelsIm = new BufferedImage(pWidth * newScaleFactor,
-                                         pHeight * newScaleFactor,
-                                         BufferedImage.TYPE_INT_ARGB);
-            if (oldIm != null) {
-                double ratio = newScaleFactor / scaleFactor;
+            FrameBuffer oldBuf = pixelsBuf;
+            // The staging buffer no longer fits either; in off-heap mode
+            // its native memory is reused or freed right away
+            pixelsBuf = new FrameBuffer(pWidth * newScaleFactor,
+                                        pHeight * newScaleFactor,
+                                        offHeapPixels, stagingBuf);
+            stagingBuf = null;
+            damageTracker.reset();
+            if (oldBuf != null) {
+                double ratio = (double) newScaleFactor / scaleFactor;
                 // Transform old size to the new coordinate space.
-                int oldW = (int)Math.round(oldIm.getWidth() * ratio);
-                int oldH = (int)Math.round(oldIm.getHeight() * ratio);
-                 
-                Graphics g = pixelsIm.getGraphics();
-                try {
-                    g.drawImage(oldIm, 0, 0, oldW, oldH, null);
-                } finally {
-                    g.dispose();
-                }
+                int oldW = (int)Math.round(oldBuf.getWidth() * ratio);
+                int oldH = (int)Math.round(oldBuf.getHeight() * ratio);
+
+                pixelsBuf.copyFrom(oldBuf, oldW, oldH);
+                // Recycled by fetchFrame for the next staging buffer
+                stagingBuf = oldBuf;
             }
         }
     }
+
+    // called on EDT only
+    private void releasePixelBuffers() {
+        if (pixelsBuf != null) {
+            pixelsBuf.release();
+            pixelsBuf = null;
+        }
+        if (stagingBuf != null) {
+            stagingBuf.release();
+            stagingBuf = null;
+        }
+    }
+
+    /**
+     * Selects whether the back buffer holding the pixels of the JavaFX
+     * scene is allocated on the Java heap or in native memory.
+     * <p>
+     * By default the back buffer is a heap image. For large panels on
+     * high-resolution displays it can take tens of megabytes, which then
+     * live in the old generation and lengthen full garbage collections.
+     * An off-heap back buffer keeps those pixels outside the Java heap; it
+     * is blitted to Swing through a small heap strip, which costs one
+     * extra copy of the pixels per paint.
+     * <p>
+     * This method should only be called on the event dispatch thread.
+     *
+     * @param offHeap {@code true} to keep the back buffer in native memory
+     */
+    public void setOffHeapPixelBuffer(boolean offHeap) {
+        if (offHeapPixels == offHeap) {
+            return;
+        }
+        offHeapPixels = offHeap;
+        paintLock.lock();
+        try {
+            if (pixelsBuf != null) {
+                resizePixelBuffer(scaleFactor);
+            }
+        } finally {
+            paintLock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether the back buffer is allocated in native memory.
+     *
+     * @return {@code true} if the back buffer is kept off the Java heap
+     * @see #setOffHeapPixelBuffer(boolean)
+     */
+    public boolean isOffHeapPixelBuffer() {
+        return offHeapPixels;
+    }
     
     @Override
     protected void processInputMethodEvent(InputMethodEvent e) {
         if (e.getID() == InputMethodEvent.INPUT_METHOD_TEXT_CHANGED) {
+            inputEntered();
             sendInputMethodEventToFX(e);
         }
         super.processInputMethodEvent(e);
     }
 
-    private void sendInputMethodEventToFX(InputMethodEvent e) {
+    /*
+     * Also called by InputEventReplayer.
+     */
+    void sendInputMethodEventToFX(InputMethodEvent e) {
         String t = InputMethodSupport.getTextForEvent(e);
-        synchronized (scenePeerLock) {
+        // Input methods may not report a caret, e.g. when they only commit
+        int caret = (e.getCaret() != null) ? e.getCaret().getInsertionIndex() : -1;
+        InputEventRecorder recorder = inputEventRecorder;
+        if (recorder != null) {
+            recorder.recordInputMethodEvent(t, e.getCommittedCharacterCount(), caret);
+        }
+        openDemandWindow();
+        inputLock.lock();
+        try {
+            inputForwarded();
             scenePeer.inputMethodEvent(
                     javafx.scene.input.InputMethodEvent.INPUT_METHOD_TEXT_CHANGED,
                     InputMethodSupport.inputMethodEventComposed(t, e.getCommittedCharacterCount()),
                     t.substring(0, e.getCommittedCharacterCount()),
-                    e.getCaret().getInsertionIndex());
+                    caret);
+            inputDelivered(e.getID());
+        } finally {
+            inputLock.unlock();
+            inputEntryNanos = 0;
         }
     }
 
@@ -704,18 +937,12 @@ public class SynchronizedJFXPanel extends JComponent {
      */
     @Override
     protected void paintComponent(Graphics g) {
-        synchronized (scenePeerLock) {
-            if ((scenePeer == null) || (pixelsIm == null)) {
+        paintLock.lock();
+        try {
+            if ((scenePeer == null) || (pixelsBuf == null)) {
                 return;
             }
 
-            DataBufferInt dataBuf = (DataBufferInt) pixelsIm.getRaster().getDataBuffer();
-            int[] pixelsData = dataBuf.getData();
-            IntBuffer buf = IntBuffer.wrap(pixelsData);
-            if (!scenePeer.getPixels(buf, pWidth, pHeight)) {
-                // In this case we just render what we have so far in the buffer.
-            }
-
             Graphics gg = null;
             try {
                 gg = g.create();
@@ -728,17 +955,23 @@ public class SynchronizedJFXPanel extends JComponent {
                     Insets i = getBorder().getBorderInsets(this);
                     gg.translate(i.left, i.top);
                 }
-                gg.drawImage(pixelsIm, 0, 0, pWidth, pHeight, null);
+                long paintStart = System.nanoTime();
+                pixelsBuf.draw(gg, 0, 0, pWidth, pHeight);
+                adaptiveResolution.paintDone(System.nanoTime() - paintStart);
+                inputPainted();
+                LatencyProbe probe = latencyProbe;
+                if (probe != null) {
+                    probe.framePainted(fetchedSequence);
+                }
 
-                int newScaleFactor = scaleFactor;
+                int newScaleFactor = deviceScaleFactor;
                 if (g instanceof SunGraphics2D) {
                     newScaleFactor = ((SunGraphics2D) g).surfaceData.getDefaultScale();
                 }
-                if (scaleFactor != newScaleFactor) {
-                    resizePixelBuffer(newScaleFactor);
-                    // The scene will request repaint.
-                    scenePeer.setPixelScaleFactor(newScaleFactor);
-                    scaleFactor = newScaleFactor;
+                if (deviceScaleFactor != newScaleFactor) {
+                    deviceScaleFactor = newScaleFactor;
+                    adaptiveResolution.setReduced(false);
+                    setRenderScaleFactor(newScaleFactor);
                 }
             } catch (Throwable th) {
                 th.printStackTrace();
@@ -747,9 +980,751 @@ public class SynchronizedJFXPanel extends JComponent {
                     gg.dispose();
                 }
             }
+        } finally {
+            paintLock.unlock();
+        }
+    }
+
+    /*
+     * Called on EDT when the scene has rendered a new frame. Fetches the
+     * frame into the back buffer and repaints the parts that changed.
+     * Paints initiated by Swing only draw the back buffer.
+     */
+    private void fetchFrame() {
+        fetchFrame(repaintPolicy == RepaintPolicy.IMMEDIATE);
+    }
+
+    /*
+     * Called on EDT by the PaintClock. The changed area is only reported to
+     * the RepaintManager; the clock paints all dirty panels in one pass
+     * once their frames are fetched.
+     */
+    void fetchFrameOnTick() {
+        fetchFrame(false);
+    }
+
+    // Fetches the new frame. If paintNow is set, the changed area is
+    // painted before returning rather than through the RepaintManager.
+    private void fetchFrame(boolean paintNow) {
+        fetchPending.set(false);
+        lastFetchNanos = System.nanoTime();
+        paintLock.lock();
+        try {
+            if ((scenePeer == null) || (pixelsBuf == null)) {
+                return;
+            }
+
+            long sequence = frameSequence.get();
+            if (sequence == fetchedSequence) {
+                // The frame in the back buffer is already the latest one
+                duplicateFrames++;
+                return;
+            }
+            if ((stagingBuf == null) || (stagingBuf.getWidth() != pixelsBuf.getWidth())
+                    || (stagingBuf.getHeight() != pixelsBuf.getHeight())
+                    || (stagingBuf.isOffHeap() != pixelsBuf.isOffHeap()))
+            {
+                stagingBuf = new FrameBuffer(pixelsBuf.getWidth(), pixelsBuf.getHeight(),
+                                             pixelsBuf.isOffHeap(), stagingBuf);
+            }
+            IntBuffer buf = stagingBuf.getTransferBuffer();
+            long fetchStart = System.nanoTime();
+            if (!scenePeer.getPixels(buf, pWidth, pHeight)) {
+                // The scene has no complete frame of this size yet, e.g.
+                // during a resize. Keep painting the last complete frame;
+                // the scene requests another repaint once it has one.
+                tornFrames++;
+                return;
+            }
+            fetchedSequence = sequence;
+            FrameBuffer complete = stagingBuf;
+            stagingBuf = pixelsBuf;
+            pixelsBuf = complete;
+            if (!isShowing()) {
+                // The frame is never painted, e.g. while input is replayed
+                // in a headless test, so measured latencies end here
+                inputPainted();
+                LatencyProbe probe = latencyProbe;
+                if (probe != null) {
+                    probe.framePainted(fetchedSequence);
+                }
+            }
+            if (adaptiveResolution.frameFetched(System.nanoTime() - fetchStart)
+                    && (deviceScaleFactor > 1))
+            {
+                // Keep painting this frame; the scene renders the next one
+                // at the reduced resolution
+                adaptiveResolution.setReduced(true);
+                setRenderScaleFactor(1);
+            }
+            // stagingBuf now holds the previous frame
+            if (!damageTracker.update(pixelsBuf, stagingBuf)) {
+                // The frame is identical to the one on screen
+                return;
+            }
+            FrameRecorder recorder = frameRecorder;
+            if (recorder != null) {
+                recorder.capture(pixelsBuf);
+            }
+            // Repaint first, so that listeners are notified after the
+            // panel painted the frame
+            if (paintNow) {
+                immediateDirty = new Rectangle(0, 0, -1, -1);
+            }
+            repaintChangedTiles();
+            if (immediateDirty != null) {
+                Rectangle r = immediateDirty;
+                immediateDirty = null;
+                if (!r.isEmpty()) {
+                    paintImmediately(r);
+                }
+            }
+            Rectangle dirty = damageTracker.getDirtyBounds();
+            frameListeners.frameReceived(dirty.x, dirty.y, dirty.width, dirty.height);
+        } finally {
+            paintLock.unlock();
+        }
+    }
+
+    // Called with paintLock held. RepaintManager merges the regions
+    // of a component, so each changed run of tiles in a row is reported and
+    // Swing paints their union.
+    private void repaintChangedTiles() {
+        Rectangle dirty = damageTracker.getDirtyBounds();
+        if (dirty.width == pixelsBuf.getWidth() && dirty.height == pixelsBuf.getHeight()) {
+            requestPaint(0, 0, getWidth(), getHeight());
+            return;
+        }
+        Insets i = (getBorder() != null) ? getBorder().getBorderInsets(this) : null;
+        int left = (i != null) ? i.left : 0;
+        int top = (i != null) ? i.top : 0;
+        int tileSize = DamageTracker.TILE_SIZE;
+        int tilesX = damageTracker.getTilesX();
+        BitSet tiles = damageTracker.getChangedTiles();
+        for (int t = tiles.nextSetBit(0); t >= 0; t = tiles.nextSetBit(t + 1)) {
+            int ty = t / tilesX;
+            int runStart = t;
+            // Extend the run along the tile row
+            while (tiles.get(t + 1) && (t + 1) / tilesX == ty) {
+                t++;
+            }
+            int x0 = (runStart % tilesX) * tileSize;
+            int x1 = (t % tilesX + 1) * tileSize;
+            int y0 = ty * tileSize;
+            int y1 = y0 + tileSize;
+            // Physical to logical coordinates, rounded outwards
+            int lx0 = x0 / scaleFactor;
+            int ly0 = y0 / scaleFactor;
+            int lx1 = (x1 + scaleFactor - 1) / scaleFactor;
+            int ly1 = (y1 + scaleFactor - 1) / scaleFactor;
+            requestPaint(left + lx0, top + ly0, lx1 - lx0, ly1 - ly0);
+        }
+    }
+
+    // Called with paintLock held, while a frame is fetched
+    private void requestPaint(int x, int y, int w, int h) {
+        if (immediateDirty != null) {
+            immediateDirty.add(new Rectangle(x, y, w, h));
+        } else {
+            repaint(x, y, w, h);
+        }
+    }
+
+    // Called on EDT for the FIXED_RATE policy. fetchPending stays set until
+    // the fetch, so frames rendered in between are not posted again.
+    private void scheduleFetch() {
+        long interval = TimeUnit.SECONDS.toNanos(1) / maxFrameRate;
+        long delay = lastFetchNanos + interval - System.nanoTime();
+        if (delay <= 0) {
+            fetchFrame();
+        } else {
+            RepaintScheduler.schedule(this::fetchFrame, TimeUnit.NANOSECONDS.toMillis(delay));
+        }
+    }
+
+    // Lets frames through for a short time with the ON_DEMAND policy
+    private void openDemandWindow() {
+        demandDeadline = System.nanoTime() + DEMAND_WINDOW_NANOS;
+    }
+
+    // Called on any thread
+    private void postFetch(RepaintPolicy policy) {
+        if (!fetchPending.compareAndSet(false, true)) {
+            return;
+        }
+        if (policy == RepaintPolicy.FIXED_RATE) {
+            dispatcher.post(this::scheduleFetch);
+        } else if ((policy != RepaintPolicy.IMMEDIATE) && PaintClock.isEnabled()) {
+            PaintClock.markDirty(this);
+        } else {
+            dispatcher.post(this::fetchFrame);
+        }
+    }
+
+    /**
+     * Sets how frames rendered by the JavaFX scene are turned into Swing
+     * paints. The default is {@link RepaintPolicy#COALESCED}.
+     *
+     * @param policy the repaint policy
+     * @throws NullPointerException if {@code policy} is null
+     * @see RepaintPolicy
+     */
+    public void setRepaintPolicy(RepaintPolicy policy) {
+        if (policy == null) {
+            throw new NullPointerException("policy");
+        }
+        repaintPolicy = policy;
+        // Frames held back by the previous policy are painted now
+        requestFrame();
+    }
+
+    /**
+     * Returns the repaint policy of this panel.
+     *
+     * @return the repaint policy
+     */
+    public RepaintPolicy getRepaintPolicy() {
+        return repaintPolicy;
+    }
+
+    /**
+     * Sets the maximum number of frames per second painted with the
+     * {@link RepaintPolicy#FIXED_RATE} policy. The default is 30.
+     *
+     * @param fps the maximum frame rate
+     * @throws IllegalArgumentException if {@code fps} is not positive
+     */
+    public void setMaxFrameRate(int fps) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("Invalid frame rate: " + fps);
+        }
+        maxFrameRate = fps;
+    }
+
+    /**
+     * Returns the maximum frame rate of the
+     * {@link RepaintPolicy#FIXED_RATE} policy.
+     *
+     * @return the maximum frame rate
+     */
+    public int getMaxFrameRate() {
+        return maxFrameRate;
+    }
+
+    /**
+     * Paints the latest frame of the JavaFX scene, and frames rendered
+     * shortly after this call. This is how content is updated with the
+     * {@link RepaintPolicy#ON_DEMAND} policy, e.g. after the application
+     * changed the scene. This method can be called on any thread.
+     */
+    public void requestFrame() {
+        openDemandWindow();
+        postFetch(repaintPolicy);
+    }
+
+    // Called on EDT when an input event is forwarded to the scene
+    private void inputForwarded() {
+        if (inputNanos == 0) {
+            inputNanos = System.nanoTime();
+            inputFrameSequence = frameSequence.get();
+        }
+    }
+
+    // Called on EDT when an input event enters the panel
+    private void inputEntered() {
+        inputEntryNanos = (latencyProbe != null) ? System.nanoTime() : 0;
+    }
+
+    // Called on EDT when an input event was delivered to the scene. Events
+    // of remote viewers did not enter through the panel and are timed from
+    // here.
+    private void inputDelivered(int id) {
+        LatencyProbe probe = latencyProbe;
+        if (probe != null) {
+            long entry = (inputEntryNanos != 0) ? inputEntryNanos : System.nanoTime();
+            probe.eventDelivered(id, entry, frameSequence.get());
+        }
+    }
+
+    // Called with paintLock held after the back buffer was painted. The
+    // first frame rendered after an input event counts as its response.
+    private void inputPainted() {
+        if ((inputNanos == 0) || (fetchedSequence <= inputFrameSequence)) {
+            return;
+        }
+        long latency = System.nanoTime() - inputNanos;
+        inputNanos = 0;
+        inputLatencyLast = latency;
+        inputLatencyMax = Math.max(inputLatencyMax, latency);
+        inputLatencyTotal += latency;
+        inputLatencyCount++;
+    }
+
+    /**
+     * Enables or disables input priority. Input priority is enabled by
+     * default.
+     * <p>
+     * Frames rendered by the scene and cursor changes are handed to the
+     * event dispatch thread as events of their own. With input priority,
+     * these events give way to key, button, drag, wheel and input method
+     * events waiting in the event queue, so input reaches the scene as
+     * soon as possible and no time is spent painting frames that the
+     * input is about to make stale. A frame is never held back for more
+     * than about 50 milliseconds, so continuous input, e.g. a long drag,
+     * does not freeze the panel.
+     *
+     * @param enabled {@code true} to dispatch input ahead of repaints
+     */
+    public void setInputPriorityEnabled(boolean enabled) {
+        dispatcher.setEnabled(enabled);
+    }
+
+    /**
+     * Returns whether input priority is enabled.
+     *
+     * @return {@code true} if input is dispatched ahead of repaints
+     * @see #setInputPriorityEnabled(boolean)
+     */
+    public boolean isInputPriorityEnabled() {
+        return dispatcher.isEnabled();
+    }
+
+    /**
+     * Returns the number of times repaints were deferred because input
+     * was pending.
+     *
+     * @return the number of deferrals
+     */
+    public long getDeferredRepaintCount() {
+        return dispatcher.getDeferralCount();
+    }
+
+    /**
+     * Returns the number of times repaints ran while input was pending
+     * because they had already been deferred for the maximum time.
+     *
+     * @return the number of repaints forced through
+     */
+    public long getStarvedRepaintCount() {
+        return dispatcher.getStarvationCount();
+    }
+
+    /**
+     * Enables or disables wheel accumulation. Wheel accumulation is
+     * enabled by default.
+     * <p>
+     * The JavaFX scene only receives whole wheel rotations. Precise wheels
+     * and trackpads report fractions of a rotation at a high rate, which
+     * without accumulation are forwarded one by one, with small fractions
+     * rounded to nothing. With accumulation, the precise rotations are
+     * summed up and forwarded as one scroll event per frame, so scrolling
+     * is smoother and the scene handles fewer scroll events.
+     * <p>
+     * This method should only be called on the event dispatch thread.
+     *
+     * @param enabled {@code true} to accumulate wheel events
+     */
+    public void setWheelAccumulationEnabled(boolean enabled) {
+        if (!enabled && wheelAccumulationEnabled) {
+            wheelAccumulator.reset();
+        }
+        wheelAccumulationEnabled = enabled;
+    }
+
+    /**
+     * Returns whether wheel accumulation is enabled.
+     *
+     * @return {@code true} if wheel events are accumulated
+     * @see #setWheelAccumulationEnabled(boolean)
+     */
+    public boolean isWheelAccumulationEnabled() {
+        return wheelAccumulationEnabled;
+    }
+
+    /**
+     * Returns the number of wheel events received while wheel accumulation
+     * was enabled.
+     *
+     * @return the number of wheel events received
+     */
+    public long getReceivedWheelEventCount() {
+        return wheelAccumulator.getReceivedCount();
+    }
+
+    /**
+     * Returns the number of consolidated scroll events forwarded to the
+     * scene by wheel accumulation.
+     *
+     * @return the number of scroll events forwarded
+     */
+    public long getForwardedWheelEventCount() {
+        return wheelAccumulator.getForwardedCount();
+    }
+
+    /**
+     * Attaches a {@link LatencyProbe} that measures the latency of every
+     * input event of this panel per stage and event type, or detaches the
+     * current one if {@code probe} is null. Without a probe, the input
+     * path is not timed beyond {@link #getInputToPaintLatency()}.
+     *
+     * @param probe the probe to attach, or null
+     */
+    public void setLatencyProbe(LatencyProbe probe) {
+        latencyProbe = probe;
+    }
+
+    /**
+     * Returns the attached {@link LatencyProbe}.
+     *
+     * @return the probe, or null if none is attached
+     */
+    public LatencyProbe getLatencyProbe() {
+        return latencyProbe;
+    }
+
+    /**
+     * Returns the most recently measured time between forwarding an input
+     * event to the scene and the first paint of a frame rendered after
+     * it. Input events forwarded while waiting for that paint do not start
+     * a measurement of their own.
+     *
+     * @return the last input-to-paint latency in nanoseconds, or 0 if
+     *         none was measured yet
+     */
+    public long getInputToPaintLatency() {
+        return inputLatencyLast;
+    }
+
+    /**
+     * Returns the average of all input-to-paint latencies measured so far.
+     *
+     * @return the average latency in nanoseconds
+     * @see #getInputToPaintLatency()
+     */
+    public long getAverageInputToPaintLatency() {
+        long count = inputLatencyCount;
+        return (count == 0) ? 0 : inputLatencyTotal / count;
+    }
+
+    /**
+     * Returns the longest input-to-paint latency measured so far.
+     *
+     * @return the maximum latency in nanoseconds
+     * @see #getInputToPaintLatency()
+     */
+    public long getMaxInputToPaintLatency() {
+        return inputLatencyMax;
+    }
+
+    // Called with paintLock held. Changes the resolution the scene
+    // renders at; the scene will request a repaint.
+    private void setRenderScaleFactor(int newScaleFactor) {
+        if (scaleFactor == newScaleFactor) {
+            return;
+        }
+        resizePixelBuffer(newScaleFactor);
+        openDemandWindow();
+        scenePeer.setPixelScaleFactor(newScaleFactor);
+        scaleFactor = newScaleFactor;
+    }
+
+    // Called on EDT once the panel is idle at a reduced resolution
+    private void restoreResolution() {
+        paintLock.lock();
+        try {
+            adaptiveResolution.setReduced(false);
+            if (scenePeer != null) {
+                setRenderScaleFactor(deviceScaleFactor);
+            }
+        } finally {
+            paintLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the contention statistics of the locks guarding the embedded
+     * scene: the {@code "paint"} lock taken while frames are fetched and
+     * painted, the {@code "input"} lock taken while input events are
+     * forwarded, and the {@code "lifecycle"} lock taken while the scene is
+     * attached or detached.
+     * <p>
+     * If the {@code javafx.embed.swing.modified.singleLock} system property
+     * is {@code true}, a single {@code "scenePeer"} lock guards everything,
+     * as in earlier versions, which makes it possible to compare the
+     * contention of both arrangements.
+     *
+     * @return a snapshot of the statistics of each lock
+     */
+    public LockStatistics[] getLockStatistics() {
+        if (paintLock == inputLock) {
+            return new LockStatistics[] { paintLock.getStatistics() };
+        }
+        return new LockStatistics[] {
+            paintLock.getStatistics(),
+            inputLock.getStatistics(),
+            lifecycleLock.getStatistics()
+        };
+    }
+
+    /**
+     * Resets the statistics returned by {@link #getLockStatistics()}.
+     */
+    public void resetLockStatistics() {
+        paintLock.resetStatistics();
+        inputLock.resetStatistics();
+        lifecycleLock.resetStatistics();
+    }
+
+    /**
+     * Returns the number of frames that were not painted because the scene
+     * could not deliver them completely, e.g. while the panel was being
+     * resized. The last complete frame stays on screen instead.
+     *
+     * @return the number of incomplete frames skipped
+     */
+    public long getTornFramesAvoided() {
+        return tornFrames;
+    }
+
+    /**
+     * Returns the number of times the pixels of the scene were not
+     * transferred because the back buffer already held the latest frame.
+     *
+     * @return the number of duplicate transfers skipped
+     */
+    public long getDuplicateFramesAvoided() {
+        return duplicateFrames;
+    }
+
+    /**
+     * Enables or disables adaptive resolution. Adaptive resolution is
+     * disabled by default, and only has an effect on high-resolution
+     * displays.
+     * <p>
+     * When enabled, the panel measures how long fetching and painting each
+     * frame takes. If the average exceeds the
+     * {@linkplain #setFrameTimeBudget(long) frame time budget}, e.g. for a
+     * very large panel during an animation, the scene is rendered at one
+     * pixel per logical pixel and scaled up to the display resolution,
+     * which takes a quarter of the work at a scale factor of 2. The full
+     * resolution is restored as soon as no new frames arrive for a short
+     * time.
+     * <p>
+     * This method should only be called on the event dispatch thread.
+     *
+     * @param enabled {@code true} to enable adaptive resolution
+     */
+    public void setAdaptiveResolutionEnabled(boolean enabled) {
+        adaptiveResolution.setEnabled(enabled);
+        if (!enabled && adaptiveResolution.isReduced()) {
+            restoreResolution();
         }
     }
 
+    /**
+     * Returns whether adaptive resolution is enabled.
+     *
+     * @return {@code true} if adaptive resolution is enabled
+     * @see #setAdaptiveResolutionEnabled(boolean)
+     */
+    public boolean isAdaptiveResolutionEnabled() {
+        return adaptiveResolution.isEnabled();
+    }
+
+    /**
+     * Sets the time per frame above which adaptive resolution reduces the
+     * resolution of the scene. The default is 16 milliseconds.
+     *
+     * @param millis the frame time budget in milliseconds
+     * @throws IllegalArgumentException if {@code millis} is not positive
+     */
+    public void setFrameTimeBudget(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Invalid frame time budget: " + millis);
+        }
+        adaptiveResolution.setBudgetNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * Returns the frame time budget of adaptive resolution.
+     *
+     * @return the frame time budget in milliseconds
+     */
+    public long getFrameTimeBudget() {
+        return TimeUnit.NANOSECONDS.toMillis(adaptiveResolution.getBudgetNanos());
+    }
+
+    /**
+     * Returns whether the scene is currently rendered at a reduced
+     * resolution.
+     *
+     * @return {@code true} if adaptive resolution reduced the resolution
+     */
+    public boolean isResolutionReduced() {
+        return adaptiveResolution.isReduced();
+    }
+
+    /**
+     * Returns the moving average of the time spent fetching and painting
+     * a frame.
+     *
+     * @return the average frame time in nanoseconds
+     */
+    public long getAverageFrameTime() {
+        return adaptiveResolution.getAverageFrameNanos();
+    }
+
+    /**
+     * Enables or disables the detection of the parts of each frame that
+     * changed. Damage detection is enabled by default.
+     * <p>
+     * The embedded scene does not report which parts of a frame changed.
+     * With damage detection, the panel compares each new frame with the
+     * previous one tile by tile, and only repaints the tiles that changed,
+     * which saves most of the blitting for small updates such as a
+     * blinking caret or a hover effect. Identical frames are not painted
+     * at all. When most of the frame changes continuously, detection
+     * suspends itself until the content calms down.
+     *
+     * @param enabled {@code true} to detect changed regions, {@code false}
+     *        to repaint the whole panel for every frame
+     */
+    public void setDamageDetectionEnabled(boolean enabled) {
+        damageTracker.setEnabled(enabled);
+    }
+
+    /**
+     * Returns whether damage detection is enabled.
+     *
+     * @return {@code true} if damage detection is enabled
+     * @see #setDamageDetectionEnabled(boolean)
+     */
+    public boolean isDamageDetectionEnabled() {
+        return damageTracker.isEnabled();
+    }
+
+    /**
+     * Returns the fraction of tiles damage detection found unchanged, over
+     * all frames compared so far. A high ratio means most repainting was
+     * avoided; a low ratio means the content changes almost entirely in
+     * every frame.
+     *
+     * @return the hit ratio, between 0 and 1
+     */
+    public double getDamageHitRatio() {
+        return damageTracker.getHitRatio();
+    }
+
+    /**
+     * Attaches an {@link InputEventRecorder} that records every input
+     * event and resize this {@code SynchronizedJFXPanel} forwards to its
+     * scene, or detaches the current one if {@code recorder} is null.
+     * <p>
+     * Detaching a recorder does not close it.
+     *
+     * @param recorder the recorder to attach, or null
+     * @see InputEventReplayer
+     */
+    public void setInputEventRecorder(InputEventRecorder recorder) {
+        inputEventRecorder = recorder;
+    }
+
+    /**
+     * Returns the attached {@link InputEventRecorder}.
+     *
+     * @return the recorder, or null if none is attached
+     */
+    public InputEventRecorder getInputEventRecorder() {
+        return inputEventRecorder;
+    }
+
+    /**
+     * Attaches a {@link FrameRecorder} that receives a copy of every frame
+     * this {@code SynchronizedJFXPanel} paints, or detaches the current one
+     * if {@code recorder} is null. Copying a frame into one of the
+     * recorder's buffers is the only work done on the event dispatch
+     * thread; encoding happens on the recorder's own thread.
+     * <p>
+     * Detaching a recorder does not close it.
+     *
+     * @param recorder the recorder to attach, or null
+     */
+    public void setFrameRecorder(FrameRecorder recorder) {
+        frameRecorder = recorder;
+    }
+
+    /**
+     * Returns the {@link FrameRecorder} attached to this panel.
+     *
+     * @return the attached recorder, or null
+     */
+    public FrameRecorder getFrameRecorder() {
+        return frameRecorder;
+    }
+
+    /**
+     * Adds a listener notified whenever this {@code SynchronizedJFXPanel}
+     * receives new frames from its JavaFX scene. Equivalent to
+     * {@code addFrameListener(listener, 0)}.
+     *
+     * @param listener the listener to add
+     * @see #addFrameListener(FrameListener, long)
+     */
+    public void addFrameListener(FrameListener listener) {
+        addFrameListener(listener, 0);
+    }
+
+    /**
+     * Adds a listener notified whenever this {@code SynchronizedJFXPanel}
+     * receives new frames from its JavaFX scene, at most once per
+     * {@code minIntervalMillis} milliseconds. Frames arriving in between
+     * are merged into the next notification.
+     * <p>
+     * Listeners are invoked on the event dispatch thread after the panel
+     * has painted, never from within the paint itself. Each
+     * {@link FrameEvent} provides the bounds that changed and a read-only,
+     * non-copying view of the panel's back buffer.
+     *
+     * @param listener the listener to add
+     * @param minIntervalMillis the minimum time between two notifications
+     *        of this listener, or 0 to notify it of every frame
+     */
+    public void addFrameListener(FrameListener listener, long minIntervalMillis) {
+        if (listener != null) {
+            frameListeners.add(listener, Math.max(0, minIntervalMillis));
+        }
+    }
+
+    /**
+     * Removes a listener previously added with
+     * {@link #addFrameListener(FrameListener, long)}.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeFrameListener(FrameListener listener) {
+        frameListeners.remove(listener);
+    }
+
+    /**
+     * Returns all frame listeners registered on this panel.
+     *
+     * @return the registered listeners, or an empty array
+     */
+    public FrameListener[] getFrameListeners() {
+        return frameListeners.getListeners();
+    }
+
+    // Accessed on EDT only
+    FrameBuffer getFrameBuffer() {
+        return pixelsBuf;
+    }
+
+    // Accessed on EDT only. The number of pixels of the frame buffer per
+    // logical pixel along each axis.
+    int getFrameScaleFactor() {
+        return scaleFactor;
+    }
+
     /**
      * Returns the preferred size of this {@code SynchronizedJFXPanel}, either
      * previously set with {@link #setPreferredSize(Dimension)} or
@@ -760,12 +1735,12 @@ public class SynchronizedJFXPanel extends JComponent {
      */
     @Override
     public Dimension getPreferredSize() {
-        synchronized (scenePeerLock) {
-            if (isPreferredSizeSet() || scenePeer == null) {
-                return super.getPreferredSize();
-            }
+        // Called constantly during layout, so only volatile snapshots are
+        // read here
+        if (isPreferredSizeSet() || scenePeer == null) {
+            return super.getPreferredSize();
         }
-        return new Dimension(pPreferredWidth, pPreferredHeight);
+        return new Dimension(pPreferredSize);
     }
 
     private boolean isFxEnabled() {
@@ -853,7 +1828,8 @@ public class SynchronizedJFXPanel extends JComponent {
 
     @Override
     public InputMethodRequests getInputMethodRequests() {
-        synchronized (scenePeerLock) {
+        inputLock.lock();
+        try {
             if (scenePeer == null) {
                 return null;
             }
@@ -863,6 +1839,8 @@ public class SynchronizedJFXPanel extends JComponent {
 //            } catch (InterruptedException ignore) { // TODO: SVN_FAIL_COMMIT
 //            } // TODO: SVN_FAIL_COMMIT
             return new InputMethodSupport.InputMethodRequestsAdapter(scenePeer.getInputMethodRequests());
+        } finally {
+            inputLock.unlock();
         }
     }
 
@@ -878,7 +1856,12 @@ public class SynchronizedJFXPanel extends JComponent {
             }
         });
 
-        pixelsIm = null;
+        paintLock.lock();
+        try {
+            releasePixelBuffers();
+        } finally {
+            paintLock.unlock();
+        }
         pWidth = 0;
         pHeight = 0;
         
@@ -927,7 +1910,10 @@ public class SynchronizedJFXPanel extends JComponent {
 
         @Override
         public void setEmbeddedScene(EmbeddedSceneInterface embeddedScene) {
-            synchronized (scenePeerLock) {
+            lifecycleLock.lock();
+            paintLock.lock();
+            inputLock.lock();
+            try {
                 if (scenePeer == embeddedScene) {
                     return;
                 }
@@ -943,6 +1929,7 @@ public class SynchronizedJFXPanel extends JComponent {
                     scenePeer.setSize(pWidth, pHeight);
                 }
                 scenePeer.setPixelScaleFactor(scaleFactor);
+                openDemandWindow();
 
                 invokeOnClientEDT(() -> {
                     dnd = new SwingDnD(SynchronizedJFXPanel.this, scenePeer);
@@ -951,6 +1938,10 @@ public class SynchronizedJFXPanel extends JComponent {
                         scenePeer.setDragStartListener(dnd.getDragStartListener());
                     }
                 });
+            } finally {
+                inputLock.unlock();
+                paintLock.unlock();
+                lifecycleLock.unlock();
             }
         }
 
@@ -973,17 +1964,24 @@ public class SynchronizedJFXPanel extends JComponent {
         @Override
         public void setPreferredSize(final int width, final int height) {
             invokeOnClientEDT(() -> {
-                SynchronizedJFXPanel.this.pPreferredWidth = width;
-                SynchronizedJFXPanel.this.pPreferredHeight = height;
+                SynchronizedJFXPanel.this.pPreferredSize = new Dimension(width, height);
                 SynchronizedJFXPanel.this.revalidate();
             });
         }
 
         @Override
         public void repaint() {
-            invokeOnClientEDT(() -> {
-                SynchronizedJFXPanel.this.repaint();
-            });
+            long sequence = frameSequence.incrementAndGet();
+            LatencyProbe probe = latencyProbe;
+            if (probe != null) {
+                probe.frameRendered(sequence);
+            }
+            RepaintPolicy policy = repaintPolicy;
+            if ((policy == RepaintPolicy.ON_DEMAND) && (System.nanoTime() - demandDeadline > 0)) {
+                // Held back until the next input event or requestFrame()
+                return;
+            }
+            postFetch(policy);
         }
 
         @Override
@@ -994,7 +1992,7 @@ public class SynchronizedJFXPanel extends JComponent {
         @Override
         public void setCursor(CursorFrame cursorFrame) {
             final Cursor cursor = getPlatformCursor(cursorFrame);
-            invokeOnClientEDT(() -> {
+            dispatcher.post(() -> {
                 SynchronizedJFXPanel.this.setCursor(cursor);
             });
         }
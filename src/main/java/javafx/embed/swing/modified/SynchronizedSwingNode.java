@@ -0,0 +1,630 @@
+package javafx.embed.swing.modified;
+
+import java.awt.AWTEvent;
+import java.awt.Cursor;
+import java.awt.Rectangle;
+import java.awt.event.MouseWheelEvent;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+import javafx.application.Platform;
+import javafx.event.EventHandler;
+import javafx.geometry.Point2D;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Region;
+import sun.awt.SunToolkit;
+import sun.swing.JLightweightFrame;
+import sun.swing.LightweightContent;
+
+/**
+ * {@code SynchronizedSwingNode} is a JavaFX node that embeds Swing content
+ * into a JavaFX scene, the reverse of {@link SynchronizedJFXPanel}.
+ * <p>
+ * The content is set with {@link #setContent(JComponent)}, which can be
+ * called on any thread:
+ * <pre>
+ *     SynchronizedSwingNode node = new SynchronizedSwingNode();
+ *     node.setContent(new JButton("Click me!"));
+ *     pane.getChildren().add(node);
+ * </pre>
+ * <p>
+ * The content is hosted in a lightweight frame on the event dispatch
+ * thread, which paints into an off-screen buffer. Like
+ * {@code SynchronizedJFXPanel}, the node never makes one toolkit thread
+ * wait for the other: input events are posted to the Swing event queue,
+ * sizes reported by Swing are cached for JavaFX layout, and painted
+ * regions are uploaded by the JavaFX application thread later. The only
+ * lock both threads take guards the hand-over of two staging buffers; it
+ * is held for plain array copies only, never while calling into either
+ * toolkit.
+ * <p>
+ * Only the regions Swing actually repainted are transferred: the event
+ * dispatch thread copies each dirty region of the frame buffer into one
+ * staging buffer, while the JavaFX application thread writes the union of
+ * the regions accumulated before its last hand-over from the other buffer
+ * into the image shown by the node, once per burst of paints.
+ * <p>
+ * The lightweight frame hosting the content is released while the node is
+ * not part of a scene, and created again when the node is added to one.
+ * <p>
+ * Drag and drop between the Swing content and JavaFX is not supported.
+ */
+public class SynchronizedSwingNode extends Region {
+
+    private final ImageView imageView = new ImageView();
+
+    private volatile JComponent content;
+    // Created and accessed on EDT; read on the FX thread to post events
+    private volatile JLightweightFrame frame;
+    // The content the frame was created for. Accessed on EDT only.
+    private JComponent frameContent;
+    // Set while the content has grabbed the focus, e.g. for a popup
+    private volatile boolean grabbed = false;
+    // Written on FX thread only
+    private volatile boolean inScene = false;
+
+    // Sizes reported by the content, in logical pixels
+    private volatile int swingPrefWidth = 0;
+    private volatile int swingPrefHeight = 0;
+    private volatile int swingMinWidth = 0;
+    private volatile int swingMinHeight = 0;
+    private volatile int swingMaxWidth = Short.MAX_VALUE;
+    private volatile int swingMaxHeight = Short.MAX_VALUE;
+
+    // Taken by Swing while it paints into the frame buffer
+    private final ReentrantLock paintLock = new ReentrantLock();
+
+    // The frame buffer of the lightweight frame. Accessed on EDT only.
+    private int frameData[];
+    private int frameOffset;
+    private int frameStride;
+    private int frameWidth;
+    private int frameHeight;
+    private int frameScale = 1;
+
+    // Held for array copies and the hand-over of the staging buffers only.
+    // Neither thread calls into a toolkit while holding it.
+    private final Object transferLock = new Object();
+    // Guarded by transferLock: the buffer the EDT copies painted regions
+    // into, and the region changed since the last hand-over, in physical
+    // pixels
+    private int staging[];
+    private int stagingWidth = 0;
+    private int stagingHeight = 0;
+    private int stagingScale = 1;
+    private Rectangle stagingDirty;
+    private boolean stagingResized = false;
+    // The region of the staging buffer that is older than the frame
+    // buffer, refreshed by the next transfer before anything else
+    private Rectangle stagingStale;
+    // The buffer last uploaded by the FX thread, handed to the EDT at the
+    // next hand-over
+    private int spare[];
+    private int spareWidth = 0;
+    private int spareHeight = 0;
+    // Set while an upload is waiting for or running on the FX thread
+    private final AtomicBoolean uploadPending = new AtomicBoolean();
+
+    // Accessed on FX thread only
+    private WritableImage image;
+    private double wheelRemainder = 0;
+    private int boundsX, boundsY, boundsWidth = -1, boundsHeight = -1;
+
+    // Written on FX thread only
+    private volatile long uploadCount = 0;
+    private volatile long uploadedPixels = 0;
+
+    /**
+     * Creates a new {@code SynchronizedSwingNode} without content.
+     */
+    public SynchronizedSwingNode() {
+        setFocusTraversable(true);
+        getChildren().add(imageView);
+
+        EventHandler<MouseEvent> mouseHandler = this::sendMouseEventToSwing;
+        addEventHandler(MouseEvent.MOUSE_PRESSED, mouseHandler);
+        addEventHandler(MouseEvent.MOUSE_RELEASED, mouseHandler);
+        addEventHandler(MouseEvent.MOUSE_CLICKED, mouseHandler);
+        addEventHandler(MouseEvent.MOUSE_MOVED, mouseHandler);
+        addEventHandler(MouseEvent.MOUSE_DRAGGED, mouseHandler);
+        addEventHandler(MouseEvent.MOUSE_ENTERED, mouseHandler);
+        addEventHandler(MouseEvent.MOUSE_EXITED, mouseHandler);
+        addEventHandler(ScrollEvent.SCROLL, this::sendScrollEventToSwing);
+        addEventHandler(KeyEvent.ANY, this::sendKeyEventToSwing);
+        focusedProperty().addListener((observable, wasFocused, focused) ->
+                sendFocusEventToSwing(focused));
+        sceneProperty().addListener((observable, oldScene, newScene) -> {
+            if ((oldScene == null) != (newScene == null)) {
+                // Release the frame while the node is not shown, so that
+                // it does not leak when the node is dropped
+                inScene = (newScene != null);
+                SwingUtilities.invokeLater(() -> setContentImpl(content));
+            }
+        });
+    }
+
+    /**
+     * Sets the Swing component shown by this node, replacing the current
+     * one. This method can be called on any thread; the component is
+     * attached on the event dispatch thread later.
+     *
+     * @param content the component to show, or null to remove the current
+     *        one and release its resources
+     */
+    public void setContent(JComponent content) {
+        this.content = content;
+        SwingUtilities.invokeLater(() -> setContentImpl(content));
+    }
+
+    /**
+     * Returns the Swing component shown by this node.
+     *
+     * @return the component, or null if there is none
+     */
+    public JComponent getContent() {
+        return content;
+    }
+
+    /**
+     * Removes the content of this node and releases its resources. This is
+     * the same as {@code setContent(null)}. Resources are also released
+     * while the node is not part of a scene, so calling this method is only
+     * needed to drop the content itself.
+     */
+    public void dispose() {
+        setContent(null);
+    }
+
+    /**
+     * Returns the number of times painted regions were uploaded to the
+     * image shown by this node.
+     *
+     * @return the number of uploads
+     */
+    public long getUploadCount() {
+        return uploadCount;
+    }
+
+    /**
+     * Returns the total number of pixels uploaded to the image shown by
+     * this node. Compared with the number of uploads times the size of
+     * the node, this shows how much the dirty-region transfer saves.
+     *
+     * @return the number of pixels uploaded
+     */
+    public long getUploadedPixelCount() {
+        return uploadedPixels;
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return swingPrefWidth;
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return swingPrefHeight;
+    }
+
+    @Override
+    protected double computeMinWidth(double height) {
+        return swingMinWidth;
+    }
+
+    @Override
+    protected double computeMinHeight(double width) {
+        return swingMinHeight;
+    }
+
+    @Override
+    protected double computeMaxWidth(double height) {
+        return swingMaxWidth;
+    }
+
+    @Override
+    protected double computeMaxHeight(double width) {
+        return swingMaxHeight;
+    }
+
+    @Override
+    protected void layoutChildren() {
+        updateFrameBounds();
+    }
+
+    // Called on EDT. Replaces the lightweight frame, unless a later call
+    // of setContent() is pending. Without content, or while the node is not
+    // part of a scene, only releases the frame.
+    private void setContentImpl(JComponent newContent) {
+        if (newContent != content) {
+            return;
+        }
+        boolean show = (newContent != null) && inScene;
+        if (show && (frame != null) && (frameContent == newContent)) {
+            return;
+        }
+        JLightweightFrame f = frame;
+        if (f != null) {
+            frame = null;
+            frameContent = null;
+            f.dispose();
+        }
+        grabbed = false;
+        if (!show) {
+            synchronized (transferLock) {
+                staging = null;
+                stagingDirty = null;
+                stagingStale = null;
+                spare = null;
+            }
+            frameData = null;
+            Platform.runLater(() -> {
+                image = null;
+                imageView.setImage(null);
+            });
+            return;
+        }
+        f = new JLightweightFrame();
+        f.setContent(new Content(newContent));
+        f.setVisible(true);
+        frame = f;
+        frameContent = newContent;
+        Platform.runLater(() -> {
+            // The new frame has no size yet
+            boundsWidth = -1;
+            requestLayout();
+        });
+    }
+
+    // Called on FX thread. Sizes and places the lightweight frame on
+    // screen, so that Swing can place popups.
+    private void updateFrameBounds() {
+        int w = (int) Math.ceil(getWidth());
+        int h = (int) Math.ceil(getHeight());
+        Point2D p = localToScreen(0, 0);
+        int x = (p != null) ? (int) Math.round(p.getX()) : 0;
+        int y = (p != null) ? (int) Math.round(p.getY()) : 0;
+        if ((x == boundsX) && (y == boundsY) && (w == boundsWidth) && (h == boundsHeight)) {
+            return;
+        }
+        boundsX = x;
+        boundsY = y;
+        boundsWidth = w;
+        boundsHeight = h;
+        SwingUtilities.invokeLater(() -> {
+            JLightweightFrame f = frame;
+            if (f != null) {
+                f.setBounds(x, y, w, h);
+                f.setHostBounds(x, y, w, h);
+                f.validate();
+            }
+        });
+    }
+
+    // Called on EDT when Swing painted into the frame buffer. Copies the
+    // region, in logical coordinates, into the staging buffer and posts an
+    // upload unless one is pending.
+    private void transfer(int x, int y, int w, int h, boolean reset) {
+        paintLock.lock();
+        try {
+            if (frameData == null) {
+                return;
+            }
+            int s = frameScale;
+            int pw = frameWidth * s;
+            int ph = frameHeight * s;
+            synchronized (transferLock) {
+                if (reset || (staging == null) || (stagingWidth != pw) || (stagingHeight != ph)) {
+                    if ((staging == null) || (staging.length < pw * ph)) {
+                        staging = new int[pw * ph];
+                    }
+                    stagingWidth = pw;
+                    stagingHeight = ph;
+                    stagingScale = s;
+                    stagingResized = true;
+                    stagingStale = null;
+                    x = 0;
+                    y = 0;
+                    w = frameWidth;
+                    h = frameHeight;
+                } else if (stagingStale != null) {
+                    // The buffer was handed over by the FX thread; bring it
+                    // up to date before copying the new region
+                    Rectangle r = stagingStale;
+                    stagingStale = null;
+                    copyFromFrame(r.x, r.y, r.x + r.width, r.y + r.height);
+                }
+                // Logical to physical coordinates, clipped to the buffer
+                int x0 = Math.max(0, x * s);
+                int y0 = Math.max(0, y * s);
+                int x1 = Math.min(pw, (x + w) * s);
+                int y1 = Math.min(ph, (y + h) * s);
+                if ((x1 <= x0) || (y1 <= y0)) {
+                    return;
+                }
+                copyFromFrame(x0, y0, x1, y1);
+                Rectangle r = new Rectangle(x0, y0, x1 - x0, y1 - y0);
+                stagingDirty = (stagingDirty == null) ? r : stagingDirty.union(r);
+            }
+        } finally {
+            paintLock.unlock();
+        }
+        if (uploadPending.compareAndSet(false, true)) {
+            Platform.runLater(this::upload);
+        }
+    }
+
+    // Called on EDT with paintLock and transferLock held. Copies a region,
+    // in physical pixels, from the frame buffer into the staging buffer.
+    private void copyFromFrame(int x0, int y0, int x1, int y1) {
+        for (int row = y0; row < y1; row++) {
+            System.arraycopy(frameData, frameOffset + row * frameStride + x0,
+                             staging, row * stagingWidth + x0, x1 - x0);
+        }
+    }
+
+    // Called on FX thread. Takes over the staging buffer with the regions
+    // copied since the last upload, hands the EDT the other buffer, and
+    // writes the regions into the image without holding any lock.
+    private void upload() {
+        uploadPending.set(false);
+        Rectangle dirty;
+        int pixels[];
+        int width, height, scale;
+        boolean resized;
+        synchronized (transferLock) {
+            dirty = stagingDirty;
+            if ((dirty == null) || (staging == null)) {
+                return;
+            }
+            stagingDirty = null;
+            pixels = staging;
+            width = stagingWidth;
+            height = stagingHeight;
+            scale = stagingScale;
+            resized = stagingResized;
+            stagingResized = false;
+            // The spare buffer was up to date when it was taken over, and
+            // has missed exactly the regions changed since then
+            if ((spare != null) && (spareWidth == width) && (spareHeight == height)) {
+                staging = spare;
+                stagingStale = dirty;
+            } else {
+                staging = new int[width * height];
+                stagingStale = new Rectangle(0, 0, width, height);
+            }
+            spare = null;
+        }
+        if (resized || (image == null)) {
+            if ((width == 0) || (height == 0)) {
+                image = null;
+                imageView.setImage(null);
+                return;
+            }
+            image = new WritableImage(width, height);
+            imageView.setImage(image);
+            imageView.setFitWidth((double) width / scale);
+            imageView.setFitHeight((double) height / scale);
+            dirty = new Rectangle(0, 0, width, height);
+        }
+        image.getPixelWriter().setPixels(dirty.x, dirty.y, dirty.width, dirty.height,
+                                         PixelFormat.getIntArgbPreInstance(), pixels,
+                                         dirty.y * width + dirty.x, width);
+        uploadCount++;
+        uploadedPixels += (long) dirty.width * dirty.height;
+        synchronized (transferLock) {
+            spare = pixels;
+            spareWidth = width;
+            spareHeight = height;
+        }
+    }
+
+    // Called on FX thread. Events are posted to the Swing event queue, so
+    // the FX thread never waits for the EDT.
+    private static void postToSwing(AWTEvent e) {
+        SunToolkit.postEvent(SunToolkit.targetToAppContext(e.getSource()), e);
+    }
+
+    private void sendMouseEventToSwing(MouseEvent event) {
+        JLightweightFrame f = frame;
+        if (f == null) {
+            return;
+        }
+        int id = SwingEvents.fxMouseEventTypeToMouseID(event);
+        if (id < 0) {
+            return;
+        }
+        if (id == java.awt.event.MouseEvent.MOUSE_PRESSED) {
+            requestFocus();
+            // The window may have moved since the last layout
+            updateFrameBounds();
+        }
+        postToSwing(new java.awt.event.MouseEvent(
+                f, id, System.currentTimeMillis(), SwingEvents.fxMouseModsToMouseMods(event),
+                (int) Math.round(event.getX()), (int) Math.round(event.getY()),
+                (int) Math.round(event.getScreenX()), (int) Math.round(event.getScreenY()),
+                event.getClickCount(), event.isPopupTrigger(),
+                SwingEvents.fxMouseButtonToMouseButton(event)));
+        event.consume();
+    }
+
+    private void sendScrollEventToSwing(ScrollEvent event) {
+        JLightweightFrame f = frame;
+        if (f == null) {
+            return;
+        }
+        int modifiers = SwingEvents.fxScrollModsToMouseWheelMods(event);
+        double delta = event.getDeltaY();
+        double multiplier = event.getMultiplierY();
+        if ((delta == 0) && (event.getDeltaX() != 0)) {
+            // Swing scrolls horizontally with shift and the vertical wheel
+            delta = event.getDeltaX();
+            multiplier = event.getMultiplierX();
+            modifiers |= java.awt.event.InputEvent.SHIFT_DOWN_MASK;
+        }
+        if ((delta == 0) || (multiplier == 0)) {
+            return;
+        }
+        // FX scrolls content down for positive deltas, Swing for negative
+        // rotations
+        double precise = -delta / multiplier;
+        if (Math.signum(precise) != Math.signum(wheelRemainder)) {
+            wheelRemainder = 0;
+        }
+        // Fractions are carried over, so that components reading only
+        // the whole rotations scroll as well
+        wheelRemainder += precise;
+        int rotation = (int) wheelRemainder;
+        wheelRemainder -= rotation;
+        postToSwing(new MouseWheelEvent(
+                f, java.awt.event.MouseEvent.MOUSE_WHEEL, System.currentTimeMillis(), modifiers,
+                (int) Math.round(event.getX()), (int) Math.round(event.getY()),
+                (int) Math.round(event.getScreenX()), (int) Math.round(event.getScreenY()),
+                0, false, MouseWheelEvent.WHEEL_UNIT_SCROLL, 1, rotation, precise));
+        event.consume();
+    }
+
+    @SuppressWarnings("deprecation")
+    private void sendKeyEventToSwing(KeyEvent event) {
+        JLightweightFrame f = frame;
+        if (f == null) {
+            return;
+        }
+        int id = SwingEvents.fxKeyEventTypeToKeyID(event);
+        int modifiers = SwingEvents.fxKeyModsToKeyMods(event);
+        java.awt.event.KeyEvent e;
+        if (id == java.awt.event.KeyEvent.KEY_TYPED) {
+            String chars = event.getCharacter();
+            if (chars.isEmpty()) {
+                return;
+            }
+            e = new java.awt.event.KeyEvent(
+                    f, id, System.currentTimeMillis(), modifiers,
+                    java.awt.event.KeyEvent.VK_UNDEFINED,
+                    SwingEvents.fxKeyCharToKeyChar(chars.charAt(0)),
+                    java.awt.event.KeyEvent.KEY_LOCATION_UNKNOWN);
+        } else {
+            e = new java.awt.event.KeyEvent(
+                    f, id, System.currentTimeMillis(), modifiers,
+                    event.getCode().impl_getCode(), java.awt.event.KeyEvent.CHAR_UNDEFINED,
+                    java.awt.event.KeyEvent.KEY_LOCATION_STANDARD);
+        }
+        postToSwing(e);
+        event.consume();
+    }
+
+    private void sendFocusEventToSwing(boolean focused) {
+        SwingUtilities.invokeLater(() -> {
+            JLightweightFrame f = frame;
+            if (f == null) {
+                return;
+            }
+            f.emulateActivation(focused);
+            if (!focused && grabbed) {
+                // E.g. close a popup of the content when focus moves away
+                f.ungrabFocus();
+            }
+        });
+    }
+
+    private class Content implements LightweightContent {
+        private final JComponent component;
+
+        Content(JComponent component) {
+            this.component = component;
+        }
+
+        @Override
+        public JComponent getComponent() {
+            return component;
+        }
+
+        @Override
+        public void paintLock() {
+            paintLock.lock();
+        }
+
+        @Override
+        public void paintUnlock() {
+            paintLock.unlock();
+        }
+
+        @Override
+        public void imageBufferReset(int data[], int x, int y, int width, int height,
+                                     int linestride)
+        {
+            imageBufferReset(data, x, y, width, height, linestride, 1);
+        }
+
+        @Override
+        public void imageBufferReset(int data[], int x, int y, int width, int height,
+                                     int linestride, int scale)
+        {
+            frameData = data;
+            frameStride = linestride;
+            frameScale = scale;
+            setFrameBounds(x, y, width, height);
+            transfer(0, 0, width, height, true);
+        }
+
+        @Override
+        public void imageReshaped(int x, int y, int width, int height) {
+            setFrameBounds(x, y, width, height);
+            transfer(0, 0, width, height, true);
+        }
+
+        @Override
+        public void imageUpdated(int dirtyX, int dirtyY, int dirtyWidth, int dirtyHeight) {
+            transfer(dirtyX, dirtyY, dirtyWidth, dirtyHeight, false);
+        }
+
+        private void setFrameBounds(int x, int y, int width, int height) {
+            frameOffset = y * frameScale * frameStride + x * frameScale;
+            frameWidth = width;
+            frameHeight = height;
+        }
+
+        @Override
+        public void focusGrabbed() {
+            grabbed = true;
+        }
+
+        @Override
+        public void focusUngrabbed() {
+            grabbed = false;
+        }
+
+        @Override
+        public void preferredSizeChanged(int width, int height) {
+            swingPrefWidth = width;
+            swingPrefHeight = height;
+            Platform.runLater(SynchronizedSwingNode.this::requestLayout);
+        }
+
+        @Override
+        public void maximumSizeChanged(int width, int height) {
+            swingMaxWidth = width;
+            swingMaxHeight = height;
+            Platform.runLater(SynchronizedSwingNode.this::requestLayout);
+        }
+
+        @Override
+        public void minimumSizeChanged(int width, int height) {
+            swingMinWidth = width;
+            swingMinHeight = height;
+            Platform.runLater(SynchronizedSwingNode.this::requestLayout);
+        }
+
+        @Override
+        public void setCursor(Cursor cursor) {
+            javafx.scene.Cursor fxCursor = SwingCursors.embedCursorToCursor(cursor);
+            Platform.runLater(() -> SynchronizedSwingNode.this.setCursor(fxCursor));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package javafx.embed.swing.modified;
+
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+/**
+ * Consolidates the mouse wheel events of a {@link SynchronizedJFXPanel}.
+ * <p>
+ * The embedded scene only accepts whole wheel rotations, while precise
+ * wheels and trackpads report fractions of a rotation, often hundreds of
+ * times per second. Forwarding each event on its own rounds small deltas
+ * to nothing and makes the scene handle far more scroll events than it
+ * can paint frames.
+ * <p>
+ * Instead, the precise rotations of all wheel events are summed up and
+ * forwarded at most once per {@link #FRAME_MILLIS} milliseconds, as a
+ * single event with the whole rotations accumulated so far. The fraction
+ * that is left is carried over to the next event, so slow scrolling still
+ * moves the content. It is dropped when the direction or the modifiers
+ * change or when the wheel has been idle for {@link #IDLE_MILLIS}
+ * milliseconds; whole rotations not forwarded yet are forwarded right
+ * before, so no scrolling is lost. The first
+ * event after a pause is forwarded right after the events already queued,
+ * so accumulation adds no delay to single wheel clicks.
+ * <p>
+ * Instances are accessed on the EDT only.
+ */
+final class WheelAccumulator {
+
+    static final int FRAME_MILLIS = 16;
+    static final int IDLE_MILLIS = 500;
+
+    private final SynchronizedJFXPanel panel;
+
+    // The latest event, whose position and modifiers are forwarded
+    private MouseWheelEvent last;
+    // Rotation not forwarded yet
+    private double pending = 0;
+    // The time the first event not forwarded yet entered the panel
+    private long entryNanos = 0;
+    private long lastEventNanos = 0;
+    private long lastFlushNanos = 0;
+    private boolean flushScheduled = false;
+
+    private long receivedCount = 0;
+    private long forwardedCount = 0;
+
+    WheelAccumulator(SynchronizedJFXPanel panel) {
+        this.panel = panel;
+    }
+
+    long getReceivedCount() {
+        return receivedCount;
+    }
+
+    long getForwardedCount() {
+        return forwardedCount;
+    }
+
+    /*
+     * Adds an event. entryNanos is the time the event entered the panel,
+     * or 0 if it is not measured.
+     */
+    void add(MouseWheelEvent e, long entryNanos) {
+        long now = System.nanoTime();
+        if ((last != null) && ((last.getModifiersEx() != e.getModifiersEx())
+                || (last.getScrollType() != e.getScrollType())))
+        {
+            // E.g. shift was pressed to scroll horizontally
+            forward();
+            pending = 0;
+        }
+        double delta = e.getPreciseWheelRotation();
+        if ((now - lastEventNanos > TimeUnit.MILLISECONDS.toNanos(IDLE_MILLIS))
+                || ((delta != 0) && (Math.signum(delta) != Math.signum(pending))))
+        {
+            forward();
+            pending = 0;
+        }
+        pending += delta;
+        last = e;
+        lastEventNanos = now;
+        receivedCount++;
+        if (this.entryNanos == 0) {
+            this.entryNanos = entryNanos;
+        }
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        long wait = TimeUnit.NANOSECONDS.toMillis(lastFlushNanos - now)
+                + FRAME_MILLIS;
+        if (wait <= 0) {
+            SwingUtilities.invokeLater(this::flush);
+        } else {
+            RepaintScheduler.schedule(this::flush, wait);
+        }
+    }
+
+    /*
+     * Forwards the whole rotations accumulated so far, and forgets the
+     * remainder. Called when accumulation is switched off.
+     */
+    void reset() {
+        forward();
+        pending = 0;
+        last = null;
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        forward();
+    }
+
+    // Forwards the whole rotations accumulated so far, if any. A flush
+    // that is already scheduled stays scheduled.
+    private void forward() {
+        int rotation = (int) pending; // rounded towards zero
+        if ((rotation == 0) || (last == null)) {
+            // Too small to scroll, the event has no visible effect
+            entryNanos = 0;
+            return;
+        }
+        pending -= rotation;
+        MouseWheelEvent e = last;
+        MouseWheelEvent merged = new MouseWheelEvent(
+                e.getComponent(), MouseEvent.MOUSE_WHEEL, e.getWhen(), e.getModifiersEx(),
+                e.getX(), e.getY(), e.getXOnScreen(), e.getYOnScreen(), e.getClickCount(),
+                false, e.getScrollType(), e.getScrollAmount(), rotation, rotation);
+        long entry = entryNanos;
+        entryNanos = 0;
+        lastFlushNanos = System.nanoTime();
+        forwardedCount++;
+        panel.forwardWheelEvent(merged, entry);
+    }
+}